@@ -26,20 +26,23 @@ public class BpTreeMap <K extends Comparable <K>, V>
 {
     /** The debug flag
     */
-    private static final boolean DEBUG = true;
+    private static final boolean DEBUG = false;
+
+    /** The default maximum fanout (number of children) for a B+Tree node.
+    */
+    public static final int DEFAULT_ORDER = 64;
 
     /** The maximum fanout (number of children) for a B+Tree node.
-        May wish to increase for better performance for Program 3.
     */
-    private static final int ORDER = 5;
+    private final int ORDER;
 
     /** The maximum fanout (number of children) for a big B+Tree node.
     */
-    private static final int BORDER = ORDER + 1;
+    private final int BORDER;
 
     /** The ceiling of half the ORDER.
     */
-    private static final int MID = ( int ) ceil ( ORDER / 2.0 );
+    private final int MID;
 
     /** The class for type K.
     */
@@ -52,12 +55,13 @@ public class BpTreeMap <K extends Comparable <K>, V>
     /********************************************************************************
         This inner class defines nodes that are stored in the B+tree map.
     */
-    private class Node
+    private class Node implements Serializable
     {
         boolean   isLeaf;                             
         int       nKeys;
         K []      key;
         Object [] ref;
+        Node      next;
 
         /****************************************************************************
             Construct a node.
@@ -99,20 +103,27 @@ public class BpTreeMap <K extends Comparable <K>, V>
         }
 
         /****************************************************************************
-            Find the "<=" match position in this node.
+            Find the "<=" match position in this node, i.e., the first position whose
+            key is >= k, by binary search over the (sorted) keys.
             @param k  the key to be matched.
             @return  the position of match within node, where nKeys indicates no match
         */
         int find( K k )
         {
-            for( int i  = 0; i < nKeys; i++ ) 
+            int lo = 0, hi = nKeys;
+            while( lo < hi )
             {
-                if( k.compareTo( key[ i ] ) <= 0 )
+                int mid = ( lo + hi ) >>> 1;
+                if( k.compareTo( key[ mid ] ) <= 0 )
                 {
-                    return i;
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid + 1;
                 }
             }
-            return nKeys;
+            return lo;
         } 
 
         /****************************************************************************
@@ -125,42 +136,106 @@ public class BpTreeMap <K extends Comparable <K>, V>
 
     /** The root of the B+Tree
     */
-    private Node root;
+    private transient Node root;
 
     /** The first (leftmost) leaf in the B+Tree
     */
-    private final Node firstLeaf;
+    private transient Node firstLeaf;
 
     /** A big node to hold all keys and references/pointers before splitting
     */
-    private final Node bn;
+    private transient Node bn;
 
     /** Flag indicating whether a split at the level below has occured that needs to be handled
     */
-    private boolean hasSplit = false;
+    private transient boolean hasSplit = false;
+
+    /** The divider key (largest left) passed up by the last split
+    */
+    private transient K divider;
 
     /** The counter for the number nodes accessed (for performance testing)
     */
-    private int count = 0;
+    private transient int count = 0;
 
     /** The counter for the total number of keys in the B+Tree Map
     */
-    private int keyCount = 0;
+    private transient int keyCount = 0;
 
     /********************************************************************************
-        Construct an empty B+Tree map.
+        Construct an empty B+Tree map with the default order.
         @param _classK  the class for keys (K)
         @param _classV  the class for values (V)
     */
     public BpTreeMap( Class <K> _classK, Class <V> _classV )
     {
+        this( _classK, _classV, DEFAULT_ORDER );
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the given order.  Higher orders give wider,
+        shallower trees, so fewer nodes are accessed per lookup.
+        @param _classK  the class for keys (K)
+        @param _classV  the class for values (V)
+        @param order    the maximum fanout (number of children) of a node (at least 3)
+    */
+    public BpTreeMap( Class <K> _classK, Class <V> _classV, int order )
+    {
+        if( order < 3 )
+        {
+            throw new IllegalArgumentException( "BpTreeMap: order must be at least 3, not " + order );
+        }
         classK    = _classK;
         classV    = _classV;
+        ORDER     = order;
+        BORDER    = ORDER + 1;
+        MID       = ( int ) ceil ( ORDER / 2.0 );
         root      = new Node ( ORDER, true );
         firstLeaf = root;
         bn        = new Node ( BORDER, true );
     }
 
+    /********************************************************************************
+        Save the B+Tree map as its number of entries followed by the entries in key
+        order.  (Serializing the nodes themselves would recurse along the whole leaf
+        chain.)
+        @param oos  the stream to write to
+    */
+    private void writeObject( ObjectOutputStream oos ) throws IOException
+    {
+        oos.defaultWriteObject();
+        oos.writeInt( keyCount );
+        for( Node n = firstLeaf; n != null; n = n.next )
+        {
+            for( int i = 0; i < n.nKeys; i++ )
+            {
+                oos.writeObject( n.key[ i ] );
+                oos.writeObject( n.ref[ i ] );
+            }
+        }
+    }
+
+    /********************************************************************************
+        Restore a B+Tree map saved by writeObject by bulk loading its entries.
+        @param ois  the stream to read from
+    */
+    @SuppressWarnings ( "unchecked" )
+    private void readObject( ObjectInputStream ois ) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject();
+        root      = new Node ( ORDER, true );
+        firstLeaf = root;
+        bn        = new Node ( BORDER, true );
+
+        List <Map.Entry <K, V>> entries = new ArrayList <> ();
+        for( int i = ois.readInt(); i > 0; i-- )
+        {
+            K key = ( K ) ois.readObject();
+            entries.add( new SimpleEntry <> ( key, ( V ) ois.readObject() ) );
+        }
+        bulkLoad( entries.iterator(), 1.0 );
+    }
+
     /********************************************************************************
         Return null to use the natural order based on the key type.  This requires the
         key type to implement Comparable.
@@ -168,31 +243,18 @@ public class BpTreeMap <K extends Comparable <K>, V>
     public Comparator <? super K> comparator() { return null; }
 
     /********************************************************************************
-        Return a set containing all the entries as pairs of keys and values.
+        Return a (live) set view of all the entries as pairs of keys and values.  Its
+        iterator follows the leaf links, so entries come out in key order.
         @return  the set view of the map
     */
     public Set <Map.Entry <K, V> > entrySet()
     {
-        Set <Map.Entry <K, V>> enSet = new HashSet <>();
-
-        Node current = root;
-
-        while( !current.isLeaf )
+        return new AbstractSet <Map.Entry <K, V>> ()
         {
-            current = ( Node ) current.ref[ 0 ];
-        }
+            public Iterator <Map.Entry <K, V>> iterator() { return rangeIterator( null, false, null, false ); }
 
-        while( current != null )
-        {
-            for( int i = 0; i < current.nKeys; i++ )
-            {
-                enSet.add( new SimpleEntry( current.key[ i ], current.ref[ i ] ) );
-            }
-
-            current = ( Node ) current.ref[ ORDER - 1 ];
-        }
-
-        return enSet;
+            public int size() { return keyCount; }
+        };
     }
 
     /********************************************************************************
@@ -206,19 +268,199 @@ public class BpTreeMap <K extends Comparable <K>, V>
         return find( ( K ) key, root );
     }
 
+    /********************************************************************************
+        Determine whether the B+Tree map holds the given key.
+        @param key  the key to look for
+        @return  whether the key is present
+    */
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
     /********************************************************************************
         Put the key-value pair in the B+Tree map.
         @param key    the key to insert
         @param value  the value to insert
-        @return  null, not the previous value for this key
+        @return  the previous value for this key, or null if there was none
     */
+    @SuppressWarnings ( "unchecked" )
     public V put( K key, V value )
     {
+        Node leaf = root;
+        while( !leaf.isLeaf )
+        {
+            leaf = ( Node ) leaf.ref[ leaf.find( key ) ];
+        }
+
+        int i = leaf.find( key );
+        if( i < leaf.nKeys && key.compareTo( leaf.key[ i ] ) == 0 )
+        {
+            V old = ( V ) leaf.ref[ i ];
+            leaf.ref[ i ] = value;
+            return old;
+        }
+
         insert( key, value, root );
         keyCount++;
         return null;
     }
 
+    /********************************************************************************
+        Remove the key (and its value) from the B+Tree map.  A node left less than half
+        full borrows a key from a sibling, or else is merged with it; a root left with
+        a single child is replaced by that child.
+        @param key  the key to remove
+        @return  the value that was associated with the key, or null if there was none
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V remove( Object key )
+    {
+        V old = delete( ( K ) key, root );
+        if( old != null )
+        {
+            keyCount--;
+            if( !root.isLeaf && root.nKeys == 0 )
+            {
+                root = ( Node ) root.ref[ 0 ];                      // collapse the root
+            }
+        }
+        return old;
+    }
+
+    /********************************************************************************
+        Remove all the keys in the given range from the B+Tree map.
+        @param lo    the low end of the range (null for no lower bound)
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range (null for no upper bound)
+        @param hiIn  whether the high end is included
+        @return  the number of keys removed
+    */
+    public int removeRange( K lo, boolean loIn, K hi, boolean hiIn )
+    {
+        List <K> doomed = new ArrayList <> ();
+        for( Iterator <Map.Entry <K, V>> it = rangeIterator( lo, loIn, hi, hiIn ); it.hasNext(); )
+        {
+            doomed.add( it.next().getKey() );
+        }
+        for( K k : doomed )
+        {
+            remove( k );
+        }
+        return doomed.size();
+    }
+
+    /********************************************************************************
+        Remove all the keys from the B+Tree map.
+    */
+    public void clear()
+    {
+        root      = new Node ( ORDER, true );
+        firstLeaf = root;
+        keyCount  = 0;
+    }
+
+    /********************************************************************************
+        Bulk load the (empty) B+Tree map from entries in ascending key order.  Rather
+        than inserting one key at a time, the leaves are filled left to right and then
+        each level of internal nodes is built on top of the one below, so every node
+        is written once.  Nodes are filled to about fillFactor of their capacity,
+        leaving room for later inserts.
+        @param entries     the entries, in strictly ascending key order
+        @param fillFactor  the fraction of each node to fill (between 0 and 1)
+    */
+    @SuppressWarnings ( "unchecked" )
+    public void bulkLoad( Iterator <? extends Map.Entry <K, V>> entries, double fillFactor )
+    {
+        if( keyCount > 0 )
+        {
+            throw new IllegalStateException( "BpTreeMap.bulkLoad: the map is not empty" );
+        }
+
+        List <K>      keys = new ArrayList <> ();
+        List <Object> refs = new ArrayList <> ();
+
+        while( entries.hasNext() )
+        {
+            Map.Entry <K, V> e = entries.next();
+            if( ! keys.isEmpty() && e.getKey().compareTo( keys.get( keys.size() - 1 ) ) <= 0 )
+            {
+                throw new IllegalArgumentException( "BpTreeMap.bulkLoad: keys not in ascending order at " + e.getKey() );
+            }
+            keys.add( e.getKey() );
+            refs.add( e.getValue() );
+        }
+        if( keys.isEmpty() )
+        {
+            return;
+        }
+
+        // build the leaf level, remembering the largest key under each node
+
+        int perLeaf = Math.max( 1, Math.min( ORDER - 1, ( int ) Math.round( ( ORDER - 1 ) * fillFactor ) ) );
+        int nLeaves = ( keys.size() + perLeaf - 1 ) / perLeaf;
+
+        List <Node> level = new ArrayList <> ( nLeaves );
+        List <K>    maxes = new ArrayList <> ( nLeaves );
+        Node        prev  = null;
+
+        for( int g = 0, from = 0; g < nLeaves; g++ )
+        {
+            int  to = ( int ) ( ( long ) keys.size() * ( g + 1 ) / nLeaves );
+            Node n  = new Node( ORDER, true );
+            for( int i = from; i < to; i++ )
+            {
+                n.key[ n.nKeys ] = keys.get( i );
+                n.ref[ n.nKeys ] = refs.get( i );
+                n.nKeys++;
+            }
+            if( prev != null )
+            {
+                prev.next = n;
+            }
+            level.add( n );
+            maxes.add( keys.get( to - 1 ) );
+            prev = n;
+            from = to;
+        }
+        firstLeaf = level.get( 0 );
+
+        // build internal levels until a single root remains (at least 3 children per
+        // node are targeted so that every node gets at least 2)
+
+        int perNode = Math.max( 3, Math.min( ORDER, ( int ) Math.round( ORDER * fillFactor ) ) );
+
+        while( level.size() > 1 )
+        {
+            int nNodes = ( level.size() + perNode - 1 ) / perNode;
+
+            List <Node> upper  = new ArrayList <> ( nNodes );
+            List <K>    uMaxes = new ArrayList <> ( nNodes );
+
+            for( int g = 0, from = 0; g < nNodes; g++ )
+            {
+                int  to = ( int ) ( ( long ) level.size() * ( g + 1 ) / nNodes );
+                Node n  = new Node( ORDER, false );
+                for( int i = from; i < to; i++ )
+                {
+                    n.ref[ i - from ] = level.get( i );
+                    if( i < to - 1 )
+                    {
+                        n.key[ n.nKeys++ ] = maxes.get( i );
+                    }
+                }
+                upper.add( n );
+                uMaxes.add( maxes.get( to - 1 ) );
+                from = to;
+            }
+            level = upper;
+            maxes = uMaxes;
+        }
+
+        root     = level.get( 0 );
+        keyCount = keys.size();
+    }
+
     /********************************************************************************
         Return the first (smallest) key in the B+Tree map.
         @return  the first key in the B+Tree map.
@@ -255,71 +497,441 @@ public class BpTreeMap <K extends Comparable <K>, V>
     } 
 
     /********************************************************************************
-        Return the portion of the B+Tree map where key < toKey.
+        Return a (live) view of the portion of the B+Tree map where key < toKey.
         @return  the submap with keys in the range [ firstKey, toKey)
     */
     public SortedMap <K, V> headMap( K toKey ) 
     { 
-        return subMap( firstKey(), toKey ); 
+        return new SubMap( null, false, toKey, false );
     }
 
     /********************************************************************************
-        Return the portion of the B+Tree map where fromKey <= key.
+        Return a (live) view of the portion of the B+Tree map where fromKey <= key.
         @return  the submap with keys in the range [ fromKey, lastKey]
     */
     public SortedMap <K, V> tailMap( K fromKey )
     {   
-        // each of these methods seeming so easy makes it seem like i missed something
-        return subMap( fromKey, lastKey() );
+        return new SubMap( fromKey, true, null, false );
     }
 
     /********************************************************************************
-        Return the portion of the B+Tree map whose keys are between fromKey and toKey,
-        i.e., fromKey <= key < toKey.
+        Return a (live) view of the portion of the B+Tree map whose keys are between
+        fromKey and toKey, i.e., fromKey <= key < toKey.  Nothing is copied: lookups
+        and puts go to this map, and iterating the view descends once to fromKey and
+        then follows the leaf links.
         @return  the submap with keys in the range [ fromKey, toKey)
     */
     public SortedMap <K, V> subMap( K fromKey, K toKey )
     {
-        BpTreeMap <K, V> submap = new BpTreeMap <> ( classK, classV );
+        if( fromKey != null && toKey != null && fromKey.compareTo( toKey ) > 0 )
+        {
+            throw new IllegalArgumentException( "BpTreeMap.subMap: fromKey > toKey" );
+        }
+        return new SubMap( fromKey, true, toKey, false );
+    } 
+
+    /********************************************************************************
+        This inner class is a view of the keys of the B+Tree map within a range, where
+        null ends are unbounded.
+    */
+    private class SubMap extends AbstractMap <K, V> implements SortedMap <K, V>
+    {
+        final K       lo, hi;
+        final boolean loIn, hiIn;
 
-        K start = fromKey == null ? firstKey() : fromKey;
-        K end   = toKey   == null ? lastKey()  : toKey;
+        SubMap( K _lo, boolean _loIn, K _hi, boolean _hiIn )
+        {
+            lo = _lo; loIn = _loIn;
+            hi = _hi; hiIn = _hiIn;
+        }
 
-        Set <Entry<K, V>> entries = this.entrySet();
+        boolean tooLow( K k )
+        {
+            if( lo == null ) return false;
+            int cmp = k.compareTo( lo );
+            return cmp < 0 || ( cmp == 0 && !loIn );
+        }
 
-        for( Entry<K, V> entry : entries )
+        boolean tooHigh( K k )
         {
-            if( entry.getKey().compareTo( start ) >= 0 &&
-                entry.getKey().compareTo( end   ) <= 0 )
+            if( hi == null ) return false;
+            int cmp = k.compareTo( hi );
+            return cmp > 0 || ( cmp == 0 && !hiIn );
+        }
+
+        boolean inRange( K k ) { return !tooLow( k ) && !tooHigh( k ); }
+
+        /** Check that a sub-view's bound does not reach outside this view. */
+        void checkBound( K k )
+        {
+            if( k != null && ( ( lo != null && k.compareTo( lo ) < 0 ) || ( hi != null && k.compareTo( hi ) > 0 ) ) )
             {
-                submap.put( entry.getKey(), entry.getValue() );
+                throw new IllegalArgumentException( "BpTreeMap.SubMap: key out of range " + k );
             }
         }
 
-        return submap;
-    } 
+        public Comparator <? super K> comparator() { return null; }
+
+        @SuppressWarnings ( "unchecked" )
+        public V get( Object key )
+        {
+            return inRange( ( K ) key ) ? BpTreeMap.this.get( key ) : null;
+        }
+
+        @SuppressWarnings ( "unchecked" )
+        public boolean containsKey( Object key )
+        {
+            return inRange( ( K ) key ) && BpTreeMap.this.containsKey( key );
+        }
+
+        public V put( K key, V value )
+        {
+            if( !inRange( key ) )
+            {
+                throw new IllegalArgumentException( "BpTreeMap.SubMap.put: key out of range " + key );
+            }
+            return BpTreeMap.this.put( key, value );
+        }
+
+        @SuppressWarnings ( "unchecked" )
+        public V remove( Object key )
+        {
+            return inRange( ( K ) key ) ? BpTreeMap.this.remove( key ) : null;
+        }
+
+        public void clear() { removeRange( lo, loIn, hi, hiIn ); }
+
+        public boolean isEmpty() { return !rangeIterator( lo, loIn, hi, hiIn ).hasNext(); }
+
+        public Set <Map.Entry <K, V>> entrySet()
+        {
+            return new AbstractSet <Map.Entry <K, V>> ()
+            {
+                public Iterator <Map.Entry <K, V>> iterator() { return rangeIterator( lo, loIn, hi, hiIn ); }
+
+                public int size()
+                {
+                    int n = 0;
+                    for( Iterator <Map.Entry <K, V>> it = iterator(); it.hasNext(); it.next() ) n++;
+                    return n;
+                }
+            };
+        }
+
+        public K firstKey()
+        {
+            Cursor c = new Cursor();
+            boolean found = ( lo == null ) ? c.first() : c.seek( lo );
+            if( found && !loIn && c.key().compareTo( lo ) == 0 )
+            {
+                found = c.next();
+            }
+            if( !found || tooHigh( c.key() ) )
+            {
+                throw new NoSuchElementException();
+            }
+            return c.key();
+        }
+
+        public K lastKey()
+        {
+            Cursor c = new Cursor();
+            boolean found;
+            if( hi == null )
+            {
+                found = c.last();
+            }
+            else if( hiIn && c.seek( hi ) && c.key().compareTo( hi ) == 0 )
+            {
+                found = true;
+            }
+            else
+            {
+                found = c.seekBefore( hi );
+            }
+            if( !found || tooLow( c.key() ) )
+            {
+                throw new NoSuchElementException();
+            }
+            return c.key();
+        }
+
+        public SortedMap <K, V> subMap( K fromKey, K toKey )
+        {
+            checkBound( fromKey ); checkBound( toKey );
+            return new SubMap( fromKey, true, toKey, false );
+        }
+
+        public SortedMap <K, V> headMap( K toKey )
+        {
+            checkBound( toKey );
+            return new SubMap( lo, loIn, toKey, false );
+        }
+
+        public SortedMap <K, V> tailMap( K fromKey )
+        {
+            checkBound( fromKey );
+            return new SubMap( fromKey, true, hi, hiIn );
+        }
+    }
 
     /********************************************************************************
-        Return the size (number of keys) in the B+Tree.
-        @return  the size of the B+Tree
+        Return a new cursor over the B+Tree map.  It is not positioned until one of
+        its seek, first or last methods is called.
+        @return  a cursor over the entries in key order
     */
-    public int size()
+    public Cursor cursor()
     {
-        int sum = 0;
-        Node n  = root;
+        return new Cursor();
+    }
+
+    /********************************************************************************
+        This inner class is a cursor that can be positioned on any key and then moved
+        forward or backward through the entries in key order.  Moving forward follows
+        the leaf links; moving backward off the start of a leaf re-descends from the
+        root (leaves are only linked forward).  Inserts and removes invalidate the
+        cursor's position.
+    */
+    public class Cursor
+    {
+        /** The leaf holding the current entry (null if not positioned) */
+        private Node n;
+
+        /** The position of the current entry in the leaf */
+        private int j;
+
+        private Cursor() {}
+
+        /****************************************************************************
+            Position the cursor at the first entry whose key is >= k.
+            @param k  the key to seek
+            @return  whether there is such an entry
+        */
+        @SuppressWarnings ( "unchecked" )
+        public boolean seek( K k )
+        {
+            n = root;
+            while( !n.isLeaf )
+            {
+                count++;
+                n = ( Node ) n.ref[ n.find( k ) ];
+            }
+            j = n.find( k );
+            return settle();
+        }
 
-        while( !n.isLeaf )
+        /****************************************************************************
+            Position the cursor at the last entry whose key is < k.
+            @param k  the key to seek before
+            @return  whether there is such an entry
+        */
+        @SuppressWarnings ( "unchecked" )
+        public boolean seekBefore( K k )
         {
-            n = ( Node ) n.ref[ 0 ];
+            Node cur = root, left = null;
+            while( !cur.isLeaf )
+            {
+                count++;
+                int i = cur.find( k );
+                if( i > 0 )
+                {
+                    left = ( Node ) cur.ref[ i - 1 ];              // deepest subtree holding smaller keys
+                }
+                cur = ( Node ) cur.ref[ i ];
+            }
+
+            int i = cur.find( k ) - 1;
+            if( i >= 0 )
+            {
+                n = cur; j = i;
+                return true;
+            }
+            if( left == null )
+            {
+                n = null;
+                return false;
+            }
+            while( !left.isLeaf )
+            {
+                left = ( Node ) left.ref[ left.nKeys ];
+            }
+            n = left; j = left.nKeys - 1;
+            return true;
         }
 
-        while( n != null )
+        /****************************************************************************
+            Position the cursor at the first (smallest) entry.
+            @return  whether the map has any entries
+        */
+        public boolean first()
         {
-            sum = sum + n.nKeys;
-            n   = ( Node ) n.ref[ n.nKeys ];
+            n = firstLeaf; j = 0;
+            return settle();
         }
 
-        return sum;
+        /****************************************************************************
+            Position the cursor at the last (largest) entry.
+            @return  whether the map has any entries
+        */
+        @SuppressWarnings ( "unchecked" )
+        public boolean last()
+        {
+            n = root;
+            while( !n.isLeaf )
+            {
+                n = ( Node ) n.ref[ n.nKeys ];
+            }
+            j = n.nKeys - 1;
+            if( j < 0 )
+            {
+                n = null;
+            }
+            return n != null;
+        }
+
+        /****************************************************************************
+            Move the cursor to the next entry.
+            @return  whether there is a next entry
+        */
+        public boolean next()
+        {
+            if( n == null )
+            {
+                return false;
+            }
+            j++;
+            return settle();
+        }
+
+        /****************************************************************************
+            Move the cursor to the previous entry.
+            @return  whether there is a previous entry
+        */
+        public boolean prev()
+        {
+            if( n == null )
+            {
+                return false;
+            }
+            if( j > 0 )
+            {
+                j--;
+                return true;
+            }
+            return seekBefore( n.key[ 0 ] );
+        }
+
+        /** Whether the cursor is positioned on an entry. */
+        public boolean valid() { return n != null; }
+
+        /** The key of the current entry. */
+        public K key()
+        {
+            if( n == null ) throw new NoSuchElementException();
+            return n.key[ j ];
+        }
+
+        /** The value of the current entry. */
+        @SuppressWarnings ( "unchecked" )
+        public V value()
+        {
+            if( n == null ) throw new NoSuchElementException();
+            return ( V ) n.ref[ j ];
+        }
+
+        /** Skip forward past the ends of leaves (to the next leaf with entries). */
+        private boolean settle()
+        {
+            while( n != null && j >= n.nKeys )
+            {
+                n = n.next;
+                j = 0;
+            }
+            return n != null;
+        }
+    }
+
+    /********************************************************************************
+        Return an iterator over the entries whose keys lie in the given range, in key
+        order.  It descends once to the leaf where the range starts and then follows
+        the leaf links, stopping at the end of the range.
+        @param lo    the low end of the range (null for no lower bound)
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range (null for no upper bound)
+        @param hiIn  whether the high end is included
+        @return  an iterator over the entries in the range
+    */
+    @SuppressWarnings ( "unchecked" )
+    public Iterator <Map.Entry <K, V>> rangeIterator( K lo, boolean loIn, K hi, boolean hiIn )
+    {
+        Node start = root;
+        while( lo != null && !start.isLeaf )
+        {
+            count++;
+            start = ( Node ) start.ref[ start.find( lo ) ];
+        }
+        if( lo == null )
+        {
+            start = firstLeaf;
+        }
+
+        int i = ( lo == null ) ? 0 : start.find( lo );
+        if( lo != null && !loIn && i < start.nKeys && lo.compareTo( start.key[ i ] ) == 0 )
+        {
+            i++;
+        }
+
+        Node first = start;
+        int  pos   = i;
+
+        return new Iterator <Map.Entry <K, V>> ()
+        {
+            Node n = first;
+            int  j = pos;
+
+            public boolean hasNext()
+            {
+                while( n != null && j >= n.nKeys )
+                {
+                    n = n.next;
+                    j = 0;
+                }
+                if( n == null )
+                {
+                    return false;
+                }
+                if( hi != null )
+                {
+                    int cmp = n.key[ j ].compareTo( hi );
+                    if( cmp > 0 || ( cmp == 0 && !hiIn ) )
+                    {
+                        n = null;
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            public Map.Entry <K, V> next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry <K, V> e = new SimpleEntry <> ( n.key[ j ], ( V ) n.ref[ j ] );
+                j++;
+                return e;
+            }
+        };
+    }
+
+    /********************************************************************************
+        Return the size (number of keys) in the B+Tree.
+        @return  the size of the B+Tree
+    */
+    public int size()
+    {
+        return keyCount;
     }
 
     /********************************************************************************
@@ -360,6 +972,211 @@ public class BpTreeMap <K extends Comparable <K>, V>
         }
     } 
 
+    /********************************************************************************
+        Recursive helper function for removing a key from B+trees.  A divider may be
+        left larger than the keys now in its left subtree; it still separates the two
+        subtrees, so it need not be changed.
+        @param key  the key to remove
+        @param n    the current node
+        @return  the removed value, or null if the key was not found
+    */
+    @SuppressWarnings ( "unchecked" )
+    private V delete( K key, Node n )
+    {
+        count++;
+        int i = n.find( key );
+
+        if( n.isLeaf )
+        {
+            if( i == n.nKeys || key.compareTo( n.key[ i ] ) != 0 )
+            {
+                return null;
+            }
+            V old = ( V ) n.ref[ i ];
+            for( int j = i; j < n.nKeys - 1; j++ )
+            {
+                n.key[ j ] = n.key[ j + 1 ];
+                n.ref[ j ] = n.ref[ j + 1 ];
+            }
+            n.nKeys--;
+            n.key[ n.nKeys ] = null;
+            n.ref[ n.nKeys ] = null;
+            return old;
+        }
+
+        Node child = ( Node ) n.ref[ i ];
+        V    old   = delete( key, child );
+
+        if( old != null && child.nKeys < minKeys( child ) )
+        {
+            rebalance( n, i );
+        }
+        return old;
+    }
+
+    /********************************************************************************
+        Return the fewest keys a (non-root) node may hold, i.e., what is left in the
+        smaller half when a full node splits.
+        @param n  the node
+        @return  the minimum number of keys
+    */
+    private int minKeys( Node n )
+    {
+        return n.isLeaf ? ORDER / 2 : ( ORDER - 1 ) / 2;
+    }
+
+    /********************************************************************************
+        Fix the underflow of the i-th child of node p by borrowing a key from an
+        adjacent sibling that can spare one, or else merging it with a sibling.
+        Merges always remove the right node of the pair, so firstLeaf is unchanged.
+        @param p  the parent node
+        @param i  the position of the underflowing child in p
+    */
+    @SuppressWarnings ( "unchecked" )
+    private void rebalance( Node p, int i )
+    {
+        Node c  = ( Node ) p.ref[ i ];
+        Node lt = ( i > 0 )        ? ( Node ) p.ref[ i - 1 ] : null;
+        Node rt = ( i < p.nKeys )  ? ( Node ) p.ref[ i + 1 ] : null;
+
+        if( lt != null && lt.nKeys > minKeys( lt ) )
+        {
+            borrowLeft( p, i - 1, lt, c );
+        }
+        else if( rt != null && rt.nKeys > minKeys( rt ) )
+        {
+            borrowRight( p, i, c, rt );
+        }
+        else if( lt != null )
+        {
+            merge( p, i - 1, lt, c );
+        }
+        else
+        {
+            merge( p, i, c, rt );
+        }
+    }
+
+    /********************************************************************************
+        Move the last key of lt to the front of its right sibling c.
+        @param p   the parent node
+        @param d   the position in p of the divider between lt and c
+        @param lt  the left sibling
+        @param c   the underflowing node
+    */
+    private void borrowLeft( Node p, int d, Node lt, Node c )
+    {
+        if( c.isLeaf )
+        {
+            for( int j = c.nKeys; j > 0; j-- )
+            {
+                c.key[ j ] = c.key[ j - 1 ];
+                c.ref[ j ] = c.ref[ j - 1 ];
+            }
+            c.key[ 0 ] = lt.key[ lt.nKeys - 1 ];
+            c.ref[ 0 ] = lt.ref[ lt.nKeys - 1 ];
+            c.nKeys++;
+            lt.nKeys--;
+            lt.key[ lt.nKeys ] = null;
+            lt.ref[ lt.nKeys ] = null;
+            p.key[ d ] = lt.key[ lt.nKeys - 1 ];                // new largest left
+        }
+        else
+        {
+            c.ref[ c.nKeys + 1 ] = c.ref[ c.nKeys ];
+            for( int j = c.nKeys; j > 0; j-- )
+            {
+                c.key[ j ] = c.key[ j - 1 ];
+                c.ref[ j ] = c.ref[ j - 1 ];
+            }
+            c.key[ 0 ] = p.key[ d ];                            // divider comes down
+            c.ref[ 0 ] = lt.ref[ lt.nKeys ];
+            c.nKeys++;
+            p.key[ d ] = lt.key[ lt.nKeys - 1 ];                // left's last key goes up
+            lt.ref[ lt.nKeys ] = null;
+            lt.nKeys--;
+            lt.key[ lt.nKeys ] = null;
+        }
+    }
+
+    /********************************************************************************
+        Move the first key of rt to the end of its left sibling c.
+        @param p   the parent node
+        @param d   the position in p of the divider between c and rt
+        @param c   the underflowing node
+        @param rt  the right sibling
+    */
+    private void borrowRight( Node p, int d, Node c, Node rt )
+    {
+        if( c.isLeaf )
+        {
+            c.key[ c.nKeys ] = rt.key[ 0 ];
+            c.ref[ c.nKeys ] = rt.ref[ 0 ];
+            c.nKeys++;
+            p.key[ d ] = rt.key[ 0 ];                           // new largest left
+        }
+        else
+        {
+            c.key[ c.nKeys ]     = p.key[ d ];                  // divider comes down
+            c.ref[ c.nKeys + 1 ] = rt.ref[ 0 ];
+            c.nKeys++;
+            p.key[ d ] = rt.key[ 0 ];                           // right's first key goes up
+            rt.ref[ 0 ] = rt.ref[ 1 ];
+        }
+
+        int shift = c.isLeaf ? 0 : 1;
+        for( int j = 0; j < rt.nKeys - 1; j++ )
+        {
+            rt.key[ j ]         = rt.key[ j + 1 ];
+            rt.ref[ j + shift ] = rt.ref[ j + 1 + shift ];
+        }
+        rt.nKeys--;
+        rt.key[ rt.nKeys ]         = null;
+        rt.ref[ rt.nKeys + shift ] = null;
+    }
+
+    /********************************************************************************
+        Merge node rt into its left sibling lt and remove rt (and the divider between
+        them) from the parent.
+        @param p   the parent node
+        @param d   the position in p of the divider between lt and rt
+        @param lt  the left node (kept)
+        @param rt  the right node (removed)
+    */
+    private void merge( Node p, int d, Node lt, Node rt )
+    {
+        if( lt.isLeaf )
+        {
+            for( int j = 0; j < rt.nKeys; j++ )
+            {
+                lt.key[ lt.nKeys + j ] = rt.key[ j ];
+                lt.ref[ lt.nKeys + j ] = rt.ref[ j ];
+            }
+            lt.nKeys += rt.nKeys;
+            lt.next   = rt.next;
+        }
+        else
+        {
+            lt.key[ lt.nKeys ] = p.key[ d ];                    // divider comes down
+            for( int j = 0; j < rt.nKeys; j++ )
+            {
+                lt.key[ lt.nKeys + 1 + j ] = rt.key[ j ];
+                lt.ref[ lt.nKeys + 1 + j ] = rt.ref[ j ];
+            }
+            lt.ref[ lt.nKeys + 1 + rt.nKeys ] = rt.ref[ rt.nKeys ];
+            lt.nKeys += 1 + rt.nKeys;
+        }
+
+        for( int j = d; j < p.nKeys - 1; j++ )
+        {
+            p.key[ j ]     = p.key[ j + 1 ];
+            p.ref[ j + 1 ] = p.ref[ j + 2 ];
+        }
+        p.nKeys--;
+        p.key[ p.nKeys ]     = null;
+        p.ref[ p.nKeys + 1 ] = null;
+    }
+
     /********************************************************************************
         Recursive helper function for finding a key in B+trees.
         @param key  the key to find
@@ -391,18 +1208,23 @@ public class BpTreeMap <K extends Comparable <K>, V>
     }
 
     /********************************************************************************
-        Recursive helper function for inserting a key in B+trees.
+        Recursive helper function for inserting a key in B+trees.  When node n has to
+        split, its new right sibling is returned and the divider key separating the two
+        is left in the divider field for the parent (or a new root) to pick up.
         @param key  the key to insert
         @param ref  the value/node to insert
         @param n    the current node
-        @return  the node inserted into (may wish to return more information)
+        @return  the new right sibling of n if n split, otherwise null
     */
     @SuppressWarnings ( "unchecked" )
     private Node insert( K key, V ref, Node n )
     {
-        out.println( "=============================================================" );
-        out.println( "insert: key = " + key );
-        out.println( "=============================================================" );
+        if( DEBUG )
+        {
+            out.println( "=============================================================" );
+            out.println( "insert: key = " + key );
+            out.println( "=============================================================" );
+        }
 
         Node rt = null;
 
@@ -411,63 +1233,54 @@ public class BpTreeMap <K extends Comparable <K>, V>
             if( n.nKeys < ORDER - 1 )                                       
             {
                 wedge( key, ref, n, n.find( key ), true );
-                hasSplit = false;          
             }
             else                                                       
             {
-                rt = split( key, ref, n, true );     
-                n.ref[ n.nKeys ] = rt;
-
-                if( n == root && rt != null )
-                {
-                    root = makeRoot( n, n.key[ n.nKeys - 1 ], rt );
-                }
-                else if( rt != null )
-                {
-                    hasSplit = true;        
-                }
+                rt      = split( key, ref, n, true );     
+                rt.next = n.next;
+                n.next  = rt;
+                divider = n.key[ n.nKeys - 1 ];
             }
+            hasSplit = rt != null;
         }
         else           
         {
             int i = n.find( key );   
 
-            rt = insert( key, ref, ( Node ) n.ref[ i ] );   
+            Node crt = insert( key, ref, ( Node ) n.ref[ i ] );   
 
             if( DEBUG )
             {
                 out.println( "insert: handle internal node level" );
             }
 
-            Node lt = ( Node ) n.ref[ i ];
-            
             if( hasSplit )
             {
                 if( n.nKeys < ORDER - 1 )
                 {
-                    wedge( lt.key[ lt.nKeys - 1 ], rt, n, i, false );
-                    hasSplit = false;
+                    wedge( divider, crt, n, i, false );
                 }
                 else
                 {
-                    Node srt = split( lt.key[ n.nKeys - 1 ], rt, n, false );
-                    hasSplit = true;
-
-                    if( n == root )
-                    {
-                        root = this.makeRoot( n, n.key[ n.nKeys - 1 ], srt );
-                        n.nKeys--;
-                    }
-                    return srt;
+                    rt = split( divider, crt, n, false );
                 }
+                hasSplit = rt != null;
             }
         }
+
+        if( n == root && rt != null )
+        {
+            root     = makeRoot( n, divider, rt );
+            hasSplit = false;
+        }
+
         if( DEBUG )
         {
             print( root, 0 );
         }
         return rt;                                      
     }
+
     /********************************************************************************
         Make a new root, linking to left and right child node, seperated by a divider key.
         @param ref0  the reference to the left child node
@@ -532,24 +1345,34 @@ public class BpTreeMap <K extends Comparable <K>, V>
 
     /********************************************************************************
         Split node n and return the newly created right sibling node rt.  The bigger half
-        should go in the current node n, with the remaining going in rt.
-        @param key  the new key to insert
-        @param ref  the new value/node to insert
-        @param n    the current node
-        @return  the right sibling node (may wish to provide more information)
+        should go in the current node n, with the remaining going in rt.  For an internal
+        node, the middle key moves up and is left in the divider field.
+        @param key   the new key to insert
+        @param ref   the new value/node to insert
+        @param n     the current node
+        @param left  whether ref goes to the left of key (leaf) or to its right (internal)
+        @return  the right sibling node
     */
     private Node split( K key, Object ref, Node n, boolean left )
     {
         bn.copy ( n, 0, ORDER - 1 );                            
+        wedge( key, ref, bn, bn.find( key ), left );
 
-        if( wedge( key, ref, bn, bn.find( key ), left ) )                 
+        Node rt = new Node ( ORDER, n.isLeaf );
+
+        if( n.isLeaf )
         {
             n.copy ( bn, 0, MID );                 
-            Node rt = new Node ( ORDER, n.isLeaf );
             rt.copy ( bn, MID, ORDER - MID );                         
-            return rt;
         }
-        return null;                                                     
+        else
+        {
+            int half = ORDER / 2;
+            n.copy ( bn, 0, half );
+            divider = bn.key[ half ];
+            rt.copy ( bn, half + 1, ORDER - half - 1 );
+        }
+        return rt;
     }
 
     /********************************************************************************
@@ -559,13 +1382,18 @@ public class BpTreeMap <K extends Comparable <K>, V>
     public static void main( String [] args )
     {
         int totalKeys    = 14;
+        int order        = 5;
         boolean RANDOMLY = false;
 
-        BpTreeMap <Integer, Integer> bpt = new BpTreeMap <> ( Integer.class, Integer.class );
-        if( args.length == 1 )
+        if( args.length >= 1 )
         {
             totalKeys = Integer.valueOf ( args[ 0 ] );
         }
+        if( args.length >= 2 )
+        {
+            order = Integer.valueOf ( args[ 1 ] );
+        }
+        BpTreeMap <Integer, Integer> bpt = new BpTreeMap <> ( Integer.class, Integer.class, order );
 
         if( RANDOMLY )
         {
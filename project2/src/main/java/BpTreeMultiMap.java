@@ -0,0 +1,423 @@
+/************************************************************************************
+    @file BpTreeMultiMap.java
+*/
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+    The BpTreeMultiMap class provides B+Tree multimaps, where a key may map to many
+    values, as needed for indices on non-key attributes (e.g., genre or studioName).
+    Each distinct key is stored once in a BpTreeMap whose leaf entry holds the key's
+    posting list of values.  Posting lists are kept compact: a single value is held
+    directly in the leaf, a few values in a small array, and only a hot key whose
+    list grows past SPILL values overflows into a hash-based set, so adding or
+    removing one of its values does not scan the list.  Either way values come out
+    in the order they were added.  A value is held at most once per key (values are
+    matched by equals, i.e., tuples by identity).
+*/
+public class BpTreeMultiMap <K extends Comparable <K>, V>
+    implements Serializable
+{
+    /** The posting list size past which a key's values overflow into a hash set
+    */
+    public static final int SPILL = 32;
+
+    /********************************************************************************
+        This nested class defines posting lists holding two or more values.
+    */
+    private static class Postings implements Serializable
+    {
+        Object []               items = new Object[ 2 ];
+        int                     n;
+        LinkedHashSet <Object>  spill;
+
+        int size() { return( spill == null ) ? n : spill.size(); }
+
+        /****************************************************************************
+            Add the value to the posting list, overflowing into a set past SPILL.
+            @param v  the value to add
+            @return  whether it was added (it was not already present)
+        */
+        boolean add( Object v )
+        {
+            if( spill != null )
+            {
+                return spill.add( v );
+            }
+            if( indexOf( v ) >= 0 )
+            {
+                return false;
+            }
+            if( n == SPILL )
+            {
+                spill = new LinkedHashSet <> ( Arrays.asList( items ).subList( 0, n ) );
+                items = null;
+                return spill.add( v );
+            }
+            if( n == items.length )
+            {
+                items = Arrays.copyOf( items, Math.min( 2 * n, SPILL ) );
+            }
+            items[ n++ ] = v;
+            return true;
+        }
+
+        /****************************************************************************
+            Remove the value from the posting list.
+            @param v  the value to remove
+            @return  whether it was present
+        */
+        boolean remove( Object v )
+        {
+            if( spill != null )
+            {
+                return spill.remove( v );
+            }
+            int i = indexOf( v );
+            if( i < 0 )
+            {
+                return false;
+            }
+            System.arraycopy( items, i + 1, items, i, n - i - 1 );
+            items[ --n ] = null;
+            return true;
+        }
+
+        /****************************************************************************
+            Return the position of the value in the (small) posting list.
+            @param v  the value to find
+            @return  its position or -1 if absent
+        */
+        int indexOf( Object v )
+        {
+            for( int i = 0; i < n; i++ )
+            {
+                if( v.equals( items[ i ] ) )
+                {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        /****************************************************************************
+            Return the (only) value left in the posting list.
+        */
+        Object only() { return( spill == null ) ? items[ 0 ] : spill.iterator().next(); }
+
+        /****************************************************************************
+            Return the values in the posting list as a list (a view unless spilled).
+        */
+        List <Object> values()
+        {
+            return( spill == null ) ? Arrays.asList( items ).subList( 0, n ) : new ArrayList <> ( spill );
+        }
+
+        /****************************************************************************
+            Return an iterator over the values in the posting list.
+        */
+        Iterator <Object> iterator()
+        {
+            return( spill == null ) ? Arrays.asList( items ).subList( 0, n ).iterator() : spill.iterator();
+        }
+    }
+
+    /** The B+Tree map from each distinct key to its value (if just one) or Postings
+    */
+    private final BpTreeMap <K, Object> tree;
+
+    /** The total number of values (over all keys)
+    */
+    private int valueCount = 0;
+
+    /********************************************************************************
+        Construct an empty B+Tree multimap with the default order.
+        @param _classK  the class for keys (K)
+    */
+    public BpTreeMultiMap( Class <K> _classK )
+    {
+        this( _classK, BpTreeMap.DEFAULT_ORDER );
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree multimap with the given order.
+        @param _classK  the class for keys (K)
+        @param order    the maximum fanout (number of children) of a node (at least 3)
+    */
+    public BpTreeMultiMap( Class <K> _classK, int order )
+    {
+        tree = new BpTreeMap <> ( _classK, Object.class, order );
+    }
+
+    /********************************************************************************
+        Add the value to the key's posting list.
+        @param key    the key
+        @param value  the value to add (not null)
+        @return  whether it was added (it was not already there for the key)
+    */
+    public boolean put( K key, V value )
+    {
+        if( value == null )
+        {
+            throw new NullPointerException( "BpTreeMultiMap.put: null value for key " + key );
+        }
+
+        Object ref = tree.get( key );
+        if( ref == null )
+        {
+            tree.put( key, value );
+        }
+        else if( ref instanceof Postings )
+        {
+            if( !( ( Postings ) ref ).add( value ) )
+            {
+                return false;
+            }
+        }
+        else
+        {
+            if( ref.equals( value ) )
+            {
+                return false;
+            }
+            Postings p = new Postings();
+            p.add( ref );
+            p.add( value );
+            tree.put( key, p );
+        }
+        valueCount++;
+        return true;
+    }
+
+    /********************************************************************************
+        Remove the value from the key's posting list, dropping the key once it has no
+        values left.
+        @param key    the key
+        @param value  the value to remove
+        @return  whether the value was there for the key
+    */
+    public boolean remove( K key, V value )
+    {
+        Object ref = tree.get( key );
+        if( ref == null )
+        {
+            return false;
+        }
+        if( ref instanceof Postings )
+        {
+            Postings p = ( Postings ) ref;
+            if( !p.remove( value ) )
+            {
+                return false;
+            }
+            if( p.size() == 1 )
+            {
+                tree.put( key, p.only() );
+            }
+        }
+        else
+        {
+            if( !ref.equals( value ) )
+            {
+                return false;
+            }
+            tree.remove( key );
+        }
+        valueCount--;
+        return true;
+    }
+
+    /********************************************************************************
+        Return the values for the key, in the order they were added.
+        @param key  the key to look up
+        @return  the (unmodifiable) values for the key, empty if there are none
+    */
+    @SuppressWarnings ( "unchecked" )
+    public List <V> get( K key )
+    {
+        Object ref = tree.get( key );
+        if( ref == null )
+        {
+            return Collections.emptyList();
+        }
+        if( ref instanceof Postings )
+        {
+            return Collections.unmodifiableList( ( List <V> ) ( ( Postings ) ref ).values() );
+        }
+        return Collections.singletonList( ( V ) ref );
+    }
+
+    /********************************************************************************
+        Return the number of values for the key.
+        @param key  the key to look up
+        @return  the length of its posting list
+    */
+    public int count( K key )
+    {
+        Object ref = tree.get( key );
+        return( ref == null ) ? 0 : ( ref instanceof Postings ) ? ( ( Postings ) ref ).size() : 1;
+    }
+
+    /********************************************************************************
+        Return the total number of values (over all keys).
+        @return  the number of values
+    */
+    public int size()
+    {
+        return valueCount;
+    }
+
+    /********************************************************************************
+        Return the number of distinct keys.
+        @return  the number of keys
+    */
+    public int keyCount()
+    {
+        return tree.size();
+    }
+
+    /********************************************************************************
+        Remove all the keys and values from the B+Tree multimap.
+    */
+    public void clear()
+    {
+        tree.clear();
+        valueCount = 0;
+    }
+
+    /********************************************************************************
+        Bulk load the (empty) B+Tree multimap from groups of values in ascending key
+        order (see BpTreeMap.bulkLoad).
+        @param groups      the keys (strictly ascending) with their values
+        @param fillFactor  the fraction of each node to fill (between 0 and 1)
+    */
+    public void bulkLoad( Iterator <? extends Map.Entry <K, ? extends Collection <V>>> groups, double fillFactor )
+    {
+        if( valueCount > 0 )
+        {
+            throw new IllegalStateException( "BpTreeMultiMap.bulkLoad: the multimap is not empty" );
+        }
+
+        List <Map.Entry <K, Object>> entries = new ArrayList <> ();
+        int                          total   = 0;
+
+        while( groups.hasNext() )
+        {
+            Map.Entry <K, ? extends Collection <V>> g = groups.next();
+            Object ref = null;
+
+            for( V v : g.getValue() )
+            {
+                if( ref == null )
+                {
+                    ref = v;
+                    total++;
+                }
+                else
+                {
+                    if( !( ref instanceof Postings ) )
+                    {
+                        if( ref.equals( v ) )
+                        {
+                            continue;
+                        }
+                        Postings p = new Postings();
+                        p.add( ref );
+                        ref = p;
+                    }
+                    if( ( ( Postings ) ref ).add( v ) )
+                    {
+                        total++;
+                    }
+                }
+            }
+            if( ref != null )
+            {
+                entries.add( new AbstractMap.SimpleEntry <> ( g.getKey(), ref ) );
+            }
+        }
+        tree.bulkLoad( entries.iterator(), fillFactor );
+        valueCount = total;
+    }
+
+    /********************************************************************************
+        Return an iterator over the values of the keys in the given range, in key
+        order (and, for each key, in the order they were added).  It descends the tree
+        once and then follows the leaf links.
+        @param lo    the low end of the range (null for no lower bound)
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range (null for no upper bound)
+        @param hiIn  whether the high end is included
+        @return  an iterator over the values in the range
+    */
+    public Iterator <V> rangeIterator( K lo, boolean loIn, K hi, boolean hiIn )
+    {
+        Iterator <Map.Entry <K, Object>> it = tree.rangeIterator( lo, loIn, hi, hiIn );
+
+        return new Iterator <V> ()
+        {
+            Iterator <Object> group = Collections.emptyIterator();
+
+            public boolean hasNext()
+            {
+                while( !group.hasNext() && it.hasNext() )
+                {
+                    Object ref = it.next().getValue();
+                    group = ( ref instanceof Postings ) ? ( ( Postings ) ref ).iterator()
+                                                        : Collections.singletonList( ref ).iterator();
+                }
+                return group.hasNext();
+            }
+
+            @SuppressWarnings ( "unchecked" )
+            public V next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                return( V ) group.next();
+            }
+        };
+    }
+
+    /********************************************************************************
+        The main method used for testing.
+        @param  the command-line arguments (args[ 0 ] gives number of values to add)
+    */
+    public static void main( String [] args )
+    {
+        int totalValues = ( args.length >= 1 ) ? Integer.valueOf( args[ 0 ] ) : 100000;
+
+        String [] genres = { "Action", "Comedy", "Drama", "Horror", "SciFi" };
+
+        BpTreeMultiMap <String, Integer> byGenre = new BpTreeMultiMap <> ( String.class );
+
+        for( int i = 0; i < totalValues; i++ )
+        {
+            byGenre.put( genres[ i % genres.length ], i );
+        }
+        for( int i = 0; i < totalValues; i += 2 )
+        {
+            byGenre.remove( genres[ i % genres.length ], i );
+        }
+
+        out.println( "keys = " + byGenre.keyCount() + " values = " + byGenre.size() );
+        for( String g : genres )
+        {
+            out.println( g + ": " + byGenre.count( g ) + " values, first = "
+                       + ( byGenre.get( g ).isEmpty() ? null : byGenre.get( g ).get( 0 ) ) );
+        }
+
+        int n = 0;
+        for( Iterator <Integer> it = byGenre.rangeIterator( "Comedy", true, "Horror", false ); it.hasNext(); it.next() )
+        {
+            n++;
+        }
+        out.println( "values in [ Comedy, Horror ) = " + n );
+    }
+
+}
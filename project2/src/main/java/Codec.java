@@ -0,0 +1,332 @@
+/****************************************************************************************
+ * @file  Codec.java
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides fixed-width binary encodings of values, used to store keys and
+ * values in the pages of a DiskBpTreeMap.  Key codecs are byte-comparable: comparing
+ * two encodings as unsigned bytes, left to right, gives the same order as comparing
+ * the values themselves, so a disk tree can search its pages without decoding keys.
+ * (Numbers are written big-endian with the sign bit flipped; strings are UTF-8 padded
+ * with zero bytes.)
+ *
+ * #usage new DiskBpTreeMap <> ( new File ( "movie.idx" ), Codec.keyType ( Integer.class ),
+ *                               Codec.tuple ( movie ) )
+ */
+public abstract class Codec <T> implements Serializable
+{
+    /** Integers (byte-comparable). */
+    public static final Codec <Integer> INTEGER = new IntCodec ();
+
+    /** Longs (byte-comparable). */
+    public static final Codec <Long> LONG = new LongCodec ();
+
+    /** Doubles (byte-comparable; -0.0 sorts before 0.0 and NaN last, as in Double.compareTo). */
+    public static final Codec <Double> DOUBLE = new DoubleCodec ();
+
+    //----------------------------------------------------------------------------------
+    // Codec Interface
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the number of bytes every encoded value takes.
+     *
+     * @return  the width of an encoding
+     */
+    public abstract int size ();
+
+    /************************************************************************************
+     * Write the encoding of value at the buffer's position (advancing it by size bytes).
+     *
+     * @param value  the value to encode
+     * @param buf    the buffer to write to
+     */
+    public abstract void encode ( T value, ByteBuffer buf );
+
+    /************************************************************************************
+     * Read a value from its encoding at the buffer's position (advancing it by size bytes).
+     *
+     * @param buf  the buffer to read from
+     * @return  the decoded value
+     */
+    public abstract T decode ( ByteBuffer buf );
+
+    /************************************************************************************
+     * Encode the value into a new byte array.
+     *
+     * @param value  the value to encode
+     * @return  its encoding
+     */
+    public byte [] encode ( T value )
+    {
+        ByteBuffer buf = ByteBuffer.allocate ( size () );
+        encode ( value, buf );
+        return buf.array ();
+    }
+
+    /************************************************************************************
+     * Decode a value from a byte array holding its encoding.
+     *
+     * @param b  the encoding
+     * @return  the decoded value
+     */
+    public T decode ( byte [] b )
+    {
+        return decode ( ByteBuffer.wrap ( b ) );
+    }
+
+    //----------------------------------------------------------------------------------
+    // Factory Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return a (byte-comparable) codec for strings of up to maxBytes bytes in UTF-8.
+     * Trailing zero characters are not preserved.
+     *
+     * @param maxBytes  the width of an encoding
+     * @return  the string codec
+     */
+    public static Codec <String> string ( int maxBytes )
+    {
+        return new StringCodec ( maxBytes );
+    }
+
+    /************************************************************************************
+     * Return a (byte-comparable) codec for values of the given domain, as used for the
+     * attributes of a table.
+     *
+     * @param domain  the domain (Integer, Long, Short, Byte, Double, Float, Character
+     *                or String)
+     * @param maxBytes  the width used for strings
+     * @return  the codec for the domain
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Codec <Comparable> of ( Class domain, int maxBytes )
+    {
+        Codec c;
+
+        if      ( domain == Integer.class )   c = INTEGER;
+        else if ( domain == Long.class )      c = LONG;
+        else if ( domain == Double.class )    c = DOUBLE;
+        else if ( domain == Short.class )     c = new ShortCodec ();
+        else if ( domain == Byte.class )      c = new ByteCodec ();
+        else if ( domain == Float.class )     c = new FloatCodec ();
+        else if ( domain == Character.class ) c = new CharCodec ();
+        else if ( domain == String.class )    c = string ( maxBytes );
+        else throw new IllegalArgumentException ( "Codec.of: unsupported domain " + domain.getName () );
+
+        return ( Codec <Comparable> ) c;
+    }
+
+    /************************************************************************************
+     * Return a (byte-comparable) codec for keys made up of values of the given domains.
+     * The values' encodings are concatenated, which orders keys as KeyType.compareTo
+     * does: by the first value, then the second, and so on.
+     *
+     * @param domains  the domains of the key attributes
+     * @return  the key codec
+     */
+    @SuppressWarnings ( "unchecked" )
+    public static Codec <KeyType> keyType ( Class ... domains )
+    {
+        Codec <Comparable> [] parts = new Codec[ domains.length ];
+
+        for ( int j = 0; j < domains.length; j++ )
+        {
+            parts[ j ] = of ( domains[ j ], Table.STRING_SIZE );
+        }
+        return new KeyCodec ( parts );
+    }
+
+    /************************************************************************************
+     * Return a codec storing the tuples of a table as packed records (see Table.pack).
+     * It is not byte-comparable, so it serves for values only.
+     *
+     * @param table  the table whose tuples are encoded
+     * @return  the tuple codec
+     */
+    public static Codec <Comparable []> tuple ( Table table )
+    {
+        return new TupleCodec ( table );
+    }
+
+    //----------------------------------------------------------------------------------
+    // Codecs
+    //----------------------------------------------------------------------------------
+
+    private static class IntCodec extends Codec <Integer>
+    {
+        public int size ()                                   { return 4; }
+        public void encode ( Integer v, ByteBuffer buf )     { buf.putInt ( v ^ Integer.MIN_VALUE ); }
+        public Integer decode ( ByteBuffer buf )             { return buf.getInt () ^ Integer.MIN_VALUE; }
+    } // IntCodec
+
+    private static class LongCodec extends Codec <Long>
+    {
+        public int size ()                                   { return 8; }
+        public void encode ( Long v, ByteBuffer buf )        { buf.putLong ( v ^ Long.MIN_VALUE ); }
+        public Long decode ( ByteBuffer buf )                { return buf.getLong () ^ Long.MIN_VALUE; }
+    } // LongCodec
+
+    private static class ShortCodec extends Codec <Short>
+    {
+        public int size ()                                   { return 2; }
+        public void encode ( Short v, ByteBuffer buf )       { buf.putShort ( ( short ) ( v ^ Short.MIN_VALUE ) ); }
+        public Short decode ( ByteBuffer buf )               { return ( short ) ( buf.getShort () ^ Short.MIN_VALUE ); }
+    } // ShortCodec
+
+    private static class ByteCodec extends Codec <Byte>
+    {
+        public int size ()                                   { return 1; }
+        public void encode ( Byte v, ByteBuffer buf )        { buf.put ( ( byte ) ( v ^ Byte.MIN_VALUE ) ); }
+        public Byte decode ( ByteBuffer buf )                { return ( byte ) ( buf.get () ^ Byte.MIN_VALUE ); }
+    } // ByteCodec
+
+    private static class CharCodec extends Codec <Character>
+    {
+        public int size ()                                   { return 2; }
+        public void encode ( Character v, ByteBuffer buf )   { buf.putChar ( v ); }
+        public Character decode ( ByteBuffer buf )           { return buf.getChar (); }
+    } // CharCodec
+
+    /** Negative numbers have all their bits flipped, others just the sign bit. */
+    private static class DoubleCodec extends Codec <Double>
+    {
+        public int size ()                                   { return 8; }
+
+        public void encode ( Double v, ByteBuffer buf )
+        {
+            long b = Double.doubleToLongBits ( v );
+            buf.putLong ( b < 0 ? ~b : b ^ Long.MIN_VALUE );
+        }
+
+        public Double decode ( ByteBuffer buf )
+        {
+            long b = buf.getLong ();
+            return Double.longBitsToDouble ( b < 0 ? b ^ Long.MIN_VALUE : ~b );
+        }
+    } // DoubleCodec
+
+    private static class FloatCodec extends Codec <Float>
+    {
+        public int size ()                                   { return 4; }
+
+        public void encode ( Float v, ByteBuffer buf )
+        {
+            int b = Float.floatToIntBits ( v );
+            buf.putInt ( b < 0 ? ~b : b ^ Integer.MIN_VALUE );
+        }
+
+        public Float decode ( ByteBuffer buf )
+        {
+            int b = buf.getInt ();
+            return Float.intBitsToFloat ( b < 0 ? b ^ Integer.MIN_VALUE : ~b );
+        }
+    } // FloatCodec
+
+    private static class StringCodec extends Codec <String>
+    {
+        private final int width;
+
+        StringCodec ( int _width )                           { width = _width; }
+
+        public int size ()                                   { return width; }
+
+        public void encode ( String v, ByteBuffer buf )
+        {
+            byte [] b = v.getBytes ( StandardCharsets.UTF_8 );
+
+            if ( b.length > width )
+            {
+                throw new IllegalArgumentException ( "Codec.encode: string longer than " + width + " bytes: " + v );
+            }
+            buf.put ( b ).put ( new byte[ width - b.length ] );
+        }
+
+        public String decode ( ByteBuffer buf )
+        {
+            byte [] b = new byte[ width ];
+            buf.get ( b );
+
+            int n = width;
+            while ( n > 0 && b[ n - 1 ] == 0 )
+            {
+                n--;
+            }
+            return new String ( b, 0, n, StandardCharsets.UTF_8 );
+        }
+    } // StringCodec
+
+    private static class KeyCodec extends Codec <KeyType>
+    {
+        private final Codec <Comparable> [] parts;
+        private final int                   width;
+
+        KeyCodec ( Codec <Comparable> [] _parts )
+        {
+            parts = _parts;
+            width = Arrays.stream ( parts ).mapToInt ( Codec::size ).sum ();
+        }
+
+        public int size ()                                   { return width; }
+
+        public void encode ( KeyType v, ByteBuffer buf )
+        {
+            Comparable [] vals = v.getKey ();
+
+            for ( int j = 0; j < parts.length; j++ )
+            {
+                parts[ j ].encode ( vals[ j ], buf );
+            }
+        }
+
+        public KeyType decode ( ByteBuffer buf )
+        {
+            Comparable [] vals = new Comparable[ parts.length ];
+
+            for ( int j = 0; j < parts.length; j++ )
+            {
+                vals[ j ] = parts[ j ].decode ( buf );
+            }
+            return new KeyType ( vals );
+        }
+    } // KeyCodec
+
+    private static class TupleCodec extends Codec <Comparable []>
+    {
+        private final Table table;
+        private final int   width;                           // kept, as it is needed while the table is being read in
+
+        TupleCodec ( Table _table )
+        {
+            table = _table;
+            width = table.recordSize ();
+        }
+
+        public int size ()                                   { return width; }
+
+        public void encode ( Comparable [] v, ByteBuffer buf )
+        {
+            byte [] b = table.pack ( v );
+
+            if ( b == null )
+            {
+                throw new IllegalArgumentException ( "Codec.encode: cannot pack " + Arrays.toString ( v ) );
+            }
+            buf.put ( b );
+        }
+
+        public Comparable [] decode ( ByteBuffer buf )
+        {
+            byte [] b = new byte[ size () ];
+            buf.get ( b );
+            return table.unpack ( b );
+        }
+    } // TupleCodec
+
+} // Codec class
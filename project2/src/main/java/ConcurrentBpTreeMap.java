@@ -0,0 +1,639 @@
+/************************************************************************************
+    @file ConcurrentBpTreeMap.java
+*/
+
+import java.lang.reflect.Array;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.StampedLock;
+
+import static java.lang.Math.ceil;
+import static java.lang.System.out;
+
+/************************************************************************************
+    The ConcurrentBpTreeMap class provides B+Tree maps that many threads may read and
+    update at once.  It is a B-link tree (Lehman and Yao): every node records a high
+    key (the largest key it may hold) and a link to its right sibling, so a thread
+    that reaches a node just after it split simply follows the right link to find
+    the key.  As in BpTreeMap, each divider key is the largest key in its left
+    subtree.
+
+    Lookups take no locks: each node is read optimistically (StampedLock) and re-read
+    if a writer changed it meanwhile.  An insert locks only the leaf it changes and,
+    when a node splits, the parent receiving the new divider, one node at a time
+    going up or right (so writers cannot deadlock).  Keys are not removed.  Iterators
+    are weakly consistent: they never fail, and return each key at most once, in
+    order.
+*/
+public class ConcurrentBpTreeMap <K extends Comparable <K>, V>
+    extends AbstractMap <K, V>
+{
+    /** The default maximum fanout (number of children) for a B+Tree node.
+    */
+    public static final int DEFAULT_ORDER = 64;
+
+    /** The maximum fanout (number of children) for a B+Tree node.
+    */
+    private final int ORDER;
+
+    /** The ceiling of half the ORDER.
+    */
+    private final int MID;
+
+    /** The class for type K.
+    */
+    private final Class <K> classK;
+
+    /** The class for type V.
+    */
+    private final Class <V> classV;
+
+    /********************************************************************************
+        This inner class defines nodes that are stored in the B-link tree.  A node
+        has room for one key (and reference) more than it may keep, so a full node
+        takes the new key first and is then split.
+    */
+    private class Node
+    {
+        final int         level;                   // 0 for leaves
+        final StampedLock lock = new StampedLock();
+        int               nKeys;
+        final K []        key;
+        final Object []   ref;
+        K                 highKey;                 // null for the rightmost node on a level
+        Node              right;
+
+        /****************************************************************************
+            Construct a node.
+            @param _level  the level of the node (0 for a leaf)
+        */
+        @SuppressWarnings ( "unchecked" )
+        Node( int _level )
+        {
+            level = _level;
+            key   = ( K [] ) Array.newInstance( classK, ORDER );
+            ref   = new Object[ ORDER + 1 ];
+        }
+
+        boolean isLeaf() { return level == 0; }
+
+        /****************************************************************************
+            Find the "<=" match position in this node by binary search.
+            @param k  the key to be matched.
+            @return  the position of match within node, where nKeys indicates no match
+        */
+        int find( K k )
+        {
+            int lo = 0, hi = nKeys;
+            while( lo < hi )
+            {
+                int mid = ( lo + hi ) >>> 1;
+                if( k.compareTo( key[ mid ] ) <= 0 )
+                {
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        /****************************************************************************
+            Whether key k lies beyond this node (so it must be looked for to the right).
+            @param k  the key
+        */
+        boolean beyond( K k ) { return highKey != null && k.compareTo( highKey ) > 0; }
+
+        /****************************************************************************
+            Insert key k with reference r at position i, where r goes at i (leaf) or
+            to the right of k at i + 1 (internal node).
+        */
+        void insertAt( int i, K k, Object r )
+        {
+            int off = isLeaf() ? 0 : 1;
+            for( int j = nKeys; j > i; j-- )
+            {
+                key[ j ]       = key[ j - 1 ];
+                ref[ j + off ] = ref[ j - 1 + off ];
+            }
+            key[ i ]       = k;
+            ref[ i + off ] = r;
+            nKeys++;
+        }
+    }
+
+    /** The root of the B-link tree (replaced, under rootLock, when the tree grows)
+    */
+    private volatile Node root;
+
+    /** The leftmost leaf (never changes, since splits move keys to a new right node)
+    */
+    private final Node firstLeaf;
+
+    /** Guards growing a new root
+    */
+    private final Object rootLock = new Object();
+
+    /** The number of keys in the map
+    */
+    private final AtomicInteger keyCount = new AtomicInteger();
+
+    /********************************************************************************
+        Construct an empty concurrent B+Tree map with the default order.
+        @param _classK  the class for keys (K)
+        @param _classV  the class for values (V)
+    */
+    public ConcurrentBpTreeMap( Class <K> _classK, Class <V> _classV )
+    {
+        this( _classK, _classV, DEFAULT_ORDER );
+    }
+
+    /********************************************************************************
+        Construct an empty concurrent B+Tree map with the given order.
+        @param _classK  the class for keys (K)
+        @param _classV  the class for values (V)
+        @param order    the maximum fanout (number of children) of a node (at least 3)
+    */
+    public ConcurrentBpTreeMap( Class <K> _classK, Class <V> _classV, int order )
+    {
+        if( order < 3 )
+        {
+            throw new IllegalArgumentException( "ConcurrentBpTreeMap: order must be at least 3, not " + order );
+        }
+        classK    = _classK;
+        classV    = _classV;
+        ORDER     = order;
+        MID       = ( int ) ceil( ORDER / 2.0 );
+        firstLeaf = new Node( 0 );
+        root      = firstLeaf;
+    }
+
+    /********************************************************************************
+        Return a (weakly consistent) set view of the entries, in key order.
+        @return  the set view of the map
+    */
+    public Set <Map.Entry <K, V>> entrySet()
+    {
+        return new AbstractSet <Map.Entry <K, V>> ()
+        {
+            public Iterator <Map.Entry <K, V>> iterator() { return rangeIterator( null, false, null, false ); }
+
+            public int size() { return keyCount.get(); }
+        };
+    }
+
+    /********************************************************************************
+        Given the key, look up the value in the map.  No locks are taken.
+        @param key  the key used for look up
+        @return  the value associated with the key or null if not found
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V get( Object key )
+    {
+        K    k = ( K ) Objects.requireNonNull( key );
+        Node n = descend( k, 0, null );
+
+        for( ;; )
+        {
+            long             stamp = n.lock.tryOptimisticRead();
+            Node             nxt   = null;
+            V                val   = null;
+            RuntimeException err   = null;
+            try
+            {
+                if( n.beyond( k ) )
+                {
+                    nxt = n.right;
+                }
+                else
+                {
+                    int i = n.find( k );
+                    if( i < n.nKeys && k.compareTo( n.key[ i ] ) == 0 )
+                    {
+                        val = ( V ) n.ref[ i ];
+                    }
+                }
+            }
+            catch( RuntimeException e )
+            {
+                err = e;                                    // possibly a torn read
+            }
+
+            if( stamp == 0 || !n.lock.validate( stamp ) )
+            {
+                Thread.onSpinWait();                        // a writer got in: re-read
+                continue;
+            }
+            if( err != null )
+            {
+                throw err;
+            }
+            if( nxt == null )
+            {
+                return val;
+            }
+            n = nxt;
+        }
+    }
+
+    /********************************************************************************
+        Determine whether the map holds the given key.
+        @param key  the key to look for
+        @return  whether the key is present
+    */
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
+    /********************************************************************************
+        Put the key-value pair in the map.
+        @param key    the key to insert
+        @param value  the value to insert (not null)
+        @return  the previous value for this key, or null if there was none
+    */
+    public V put( K key, V value )
+    {
+        return put( key, value, false );
+    }
+
+    /********************************************************************************
+        Put the key-value pair in the map unless the key is already present.
+        @param key    the key to insert
+        @param value  the value to insert (not null)
+        @return  the current value for this key, or null if the pair was put
+    */
+    public V putIfAbsent( K key, V value )
+    {
+        return put( key, value, true );
+    }
+
+    /********************************************************************************
+        Put the key-value pair in the leaf covering the key, then split full nodes,
+        passing their dividers up, until a node has room.
+        @param key           the key to insert
+        @param value         the value to insert
+        @param onlyIfAbsent  whether to leave an existing value alone
+        @return  the previous value for this key, or null if there was none
+    */
+    @SuppressWarnings ( "unchecked" )
+    private V put( K key, V value, boolean onlyIfAbsent )
+    {
+        Objects.requireNonNull( key );
+        Objects.requireNonNull( value );
+
+        Deque <Node> path = new ArrayDeque <> ();
+        Node         n    = lockCovering( descend( key, 0, path ), key );
+
+        int i = n.find( key );
+        if( i < n.nKeys && key.compareTo( n.key[ i ] ) == 0 )
+        {
+            V old = ( V ) n.ref[ i ];
+            if( !onlyIfAbsent )
+            {
+                n.ref[ i ] = value;
+            }
+            n.lock.tryUnlockWrite();
+            return old;
+        }
+
+        n.insertAt( i, key, value );
+        keyCount.incrementAndGet();
+
+        while( n.nKeys == ORDER )                           // overfull: split
+        {
+            Node rt  = split( n );
+            K    div = n.highKey;
+            Node p   = lockParent( n, rt, div, path );
+            n.lock.tryUnlockWrite();
+            if( p == null )
+            {
+                return null;                                // a new root was grown
+            }
+            p.insertAt( p.find( div ), div, rt );
+            n = p;
+        }
+        n.lock.tryUnlockWrite();
+        return null;
+    }
+
+    /********************************************************************************
+        Split the (locked, overfull) node n, moving its upper half to a new right
+        sibling.  n's high key becomes the divider between them.  The new node is
+        fully built before n links to it, so readers always see a whole node.
+        @param n  the node to split
+        @return  the new right sibling
+    */
+    private Node split( Node n )
+    {
+        Node rt   = new Node( n.level );
+        int  keep = n.isLeaf() ? MID : ORDER / 2;
+        K    div  = n.key[ keep - ( n.isLeaf() ? 1 : 0 ) ];
+        int  from = n.isLeaf() ? keep : keep + 1;           // an internal divider moves up
+
+        for( int j = from; j < n.nKeys; j++ )
+        {
+            rt.key[ j - from ] = n.key[ j ];
+            rt.ref[ j - from ] = n.ref[ j ];
+        }
+        rt.nKeys = n.nKeys - from;
+        if( !n.isLeaf() )
+        {
+            rt.ref[ rt.nKeys ] = n.ref[ n.nKeys ];
+        }
+        rt.highKey = n.highKey;
+        rt.right   = n.right;
+
+        for( int j = keep; j < n.nKeys; j++ )
+        {
+            n.key[ j ] = null;
+        }
+        for( int j = keep + ( n.isLeaf() ? 0 : 1 ); j <= n.nKeys; j++ )
+        {
+            n.ref[ j ] = null;
+        }
+        n.nKeys   = keep;
+        n.highKey = div;
+        n.right   = rt;
+        return rt;
+    }
+
+    /********************************************************************************
+        Lock the parent that is to receive the divider for the split of n, while n is
+        still locked.  It is normally the node descended through on the way down
+        (moving right if it split since); if n was the root, a new root is grown
+        instead.
+        @param n     the node that split
+        @param rt    its new right sibling
+        @param div   the divider between them
+        @param path  the internal nodes descended through, deepest on top
+        @return  the locked parent, or null if a new root was grown
+    */
+    private Node lockParent( Node n, Node rt, K div, Deque <Node> path )
+    {
+        Node p = path.poll();
+        if( p == null )
+        {
+            synchronized( rootLock )
+            {
+                if( root == n )
+                {
+                    Node nr = new Node( n.level + 1 );
+                    nr.key[ 0 ] = div;
+                    nr.ref[ 0 ] = n;
+                    nr.ref[ 1 ] = rt;
+                    nr.nKeys    = 1;
+                    root        = nr;
+                    return null;
+                }
+            }
+            p = descend( div, n.level + 1, null );          // the tree grew past n
+        }
+        return lockCovering( p, div );
+    }
+
+    /********************************************************************************
+        Lock the node on n's level that covers key k, starting at n and moving right
+        (locking the sibling before unlocking the node) past nodes that split.
+        @param n  the node to start from
+        @param k  the key
+        @return  the locked node covering k
+    */
+    private Node lockCovering( Node n, K k )
+    {
+        n.lock.writeLock();
+        while( n.beyond( k ) )
+        {
+            Node rt = n.right;
+            rt.lock.writeLock();
+            n.lock.tryUnlockWrite();
+            n = rt;
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Descend (without locking) from the root to a node on the given level that is
+        on the way to key k.  The node may have split since, so callers must still
+        move right past its high key.
+        @param k      the key to search for
+        @param level  the level to stop at
+        @param path   if not null, collects the nodes descended through
+        @return  a node on the given level
+    */
+    @SuppressWarnings ( "unchecked" )
+    private Node descend( K k, int level, Deque <Node> path )
+    {
+        Node n = root;
+        while( n.level > level )
+        {
+            long             stamp = n.lock.tryOptimisticRead();
+            Node             nxt   = null;
+            boolean          down  = false;
+            RuntimeException err   = null;
+            try
+            {
+                if( n.beyond( k ) )
+                {
+                    nxt = n.right;
+                }
+                else
+                {
+                    nxt  = ( Node ) n.ref[ n.find( k ) ];
+                    down = true;
+                }
+            }
+            catch( RuntimeException e )
+            {
+                err = e;
+            }
+
+            if( stamp == 0 || !n.lock.validate( stamp ) )
+            {
+                Thread.onSpinWait();
+                continue;
+            }
+            if( err != null )
+            {
+                throw err;
+            }
+            if( down && path != null )
+            {
+                path.push( n );
+            }
+            n = nxt;
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Return a (weakly consistent) iterator over the entries whose keys lie in the
+        given range, in key order.  Each leaf is copied under an optimistic read, and
+        keys not beyond the last one returned are skipped, so a leaf splitting during
+        the scan does not cause repeats.
+        @param lo    the low end of the range (null for no lower bound)
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range (null for no upper bound)
+        @param hiIn  whether the high end is included
+        @return  an iterator over the entries in the range
+    */
+    public Iterator <Map.Entry <K, V>> rangeIterator( K lo, boolean loIn, K hi, boolean hiIn )
+    {
+        Node start = ( lo == null ) ? firstLeaf : descend( lo, 0, null );
+
+        return new Iterator <Map.Entry <K, V>> ()
+        {
+            Node                   n    = start;
+            List <Map.Entry <K, V>> buf = new ArrayList <> ();
+            int                    pos  = 0;
+            K                      last = null;             // the last key taken from a leaf
+
+            @SuppressWarnings ( "unchecked" )
+            private boolean fill()
+            {
+                while( pos == buf.size() && n != null )
+                {
+                    buf.clear();
+                    pos = 0;
+
+                    long   stamp = n.lock.tryOptimisticRead();
+                    int    nk    = 0;
+                    K []   ks    = null;
+                    Object [] rs = null;
+                    Node   nxt   = null;
+                    try
+                    {
+                        nk  = n.nKeys;
+                        ks  = Arrays.copyOf( n.key, nk );
+                        rs  = Arrays.copyOf( n.ref, nk );
+                        nxt = n.right;
+                    }
+                    catch( RuntimeException e )
+                    {
+                        // torn read, caught by validate
+                    }
+                    if( stamp == 0 || !n.lock.validate( stamp ) )
+                    {
+                        Thread.onSpinWait();
+                        continue;
+                    }
+
+                    for( int j = 0; j < nk; j++ )
+                    {
+                        K k = ks[ j ];
+                        if( last != null && k.compareTo( last ) <= 0 ) continue;
+                        if( lo != null && ( k.compareTo( lo ) < 0 || ( !loIn && k.compareTo( lo ) == 0 ) ) ) continue;
+                        buf.add( new SimpleEntry <> ( k, ( V ) rs[ j ] ) );
+                    }
+                    if( nk > 0 && ( last == null || ks[ nk - 1 ].compareTo( last ) > 0 ) )
+                    {
+                        last = ks[ nk - 1 ];
+                    }
+                    n = nxt;
+                }
+                return pos < buf.size();
+            }
+
+            public boolean hasNext()
+            {
+                if( !fill() )
+                {
+                    return false;
+                }
+                if( hi != null )
+                {
+                    int cmp = buf.get( pos ).getKey().compareTo( hi );
+                    if( cmp > 0 || ( cmp == 0 && !hiIn ) )
+                    {
+                        n   = null;
+                        buf.clear();
+                        pos = 0;
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            public Map.Entry <K, V> next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                return buf.get( pos++ );
+            }
+        };
+    }
+
+    /********************************************************************************
+        Return the size (number of keys) in the map.
+        @return  the size of the map
+    */
+    public int size()
+    {
+        return keyCount.get();
+    }
+
+    /********************************************************************************
+        The main method used for testing.  Several threads insert interleaved keys
+        while another looks them up.
+        @param  the command-line arguments (args [0] gives number of keys to insert)
+    */
+    public static void main( String [] args ) throws InterruptedException
+    {
+        int totalKeys = 100000;
+        int nThreads  = 4;
+
+        if( args.length >= 1 )
+        {
+            totalKeys = Integer.valueOf ( args[ 0 ] );
+        }
+
+        ConcurrentBpTreeMap <Integer, Integer> map = new ConcurrentBpTreeMap <> ( Integer.class, Integer.class, 8 );
+        Thread [] writers = new Thread[ nThreads ];
+        int       n       = totalKeys;
+
+        for( int t = 0; t < nThreads; t++ )
+        {
+            int id = t;
+            writers[ t ] = new Thread( () -> {
+                for( int i = id; i < n; i += nThreads )
+                {
+                    map.put( i, i * i );
+                }
+            } );
+            writers[ t ].start();
+        }
+
+        int [] found = new int[ 1 ];
+        Thread reader = new Thread( () -> {
+            for( int i = 0; i < n; i++ )
+            {
+                Integer v = map.get( i );
+                if( v != null && v != i * i ) out.println( "wrong value for key " + i );
+                if( v != null ) found[ 0 ]++;
+            }
+        } );
+        reader.start();
+
+        for( Thread w : writers ) w.join();
+        reader.join();
+
+        int prev = -1, seen = 0;
+        for( Map.Entry <Integer, Integer> e : map.entrySet() )
+        {
+            if( e.getKey() <= prev ) out.println( "out of order at key " + e.getKey() );
+            prev = e.getKey();
+            seen++;
+        }
+        out.println( "-------------------------------------------" );
+        out.println( "size = " + map.size() + ", iterated = " + seen + ", found while loading = " + found[ 0 ] );
+        for( int i = 0; i < n; i++ )
+        {
+            if( map.get( i ) == null ) out.println( "missing key " + i );
+        }
+    }
+
+} // ConcurrentBpTreeMap class
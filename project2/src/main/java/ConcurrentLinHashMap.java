@@ -0,0 +1,574 @@
+/************************************************************************************
+ * @file ConcurrentLinHashMap.java
+ */
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides hash maps that use the Linear Hashing algorithm (see LinHashMap)
+ * and that many threads may read and update at once.
+ *
+ * Readers take no locks.  The entries of a bucket chain (a home bucket and its
+ * overflow) are kept in an immutable Bucket, which a writer replaces by an updated
+ * copy, so a reader always sees a whole chain.  The moduli and the split pointer are
+ * published together in one volatile word.  A reader locates the key's bucket, reads
+ * it, and then checks that the key's address has not changed meanwhile.  If it has,
+ * a split may have moved the key, and the reader tries again.
+ *
+ * A writer locks only the key's home bucket (buckets share a fixed number of lock
+ * stripes).  A split locks just the bucket being split and the new bucket.  The
+ * moved keys are published in the new bucket before the split pointer advances, and
+ * only then dropped from the old one, so every key can always be found at its
+ * current address.  Splitting is cooperative: whichever writer pushes the load past
+ * the load factor takes the split token and splits until the load is back under it.
+ * Writers that find the token taken do not wait for it.  Keys and values may not be
+ * null.  The entry set is a snapshot.
+ */
+public class ConcurrentLinHashMap <K, V> extends AbstractMap <K, V>
+{
+    /** The number of lock stripes shared by the buckets (a power of 2).
+     */
+    private static final int STRIPES = 64;
+
+    /********************************************************************************
+     * This nested class defines the (immutable) entries of a bucket chain.
+     */
+    private static class Bucket
+    {
+        final Object [] key;
+        final Object [] value;
+
+        Bucket ( Object [] _key, Object [] _value )
+        {
+            key   = _key;
+            value = _value;
+        }
+
+        /** The position of key k, or -1 if it is not in the chain. */
+        int find ( Object k )
+        {
+            for ( int j = 0; j < key.length; j++ )
+            {
+                if ( key[ j ].equals ( k ) )
+                {
+                    return j;
+                }
+            }
+            return -1;
+        }
+
+        /** A copy of the chain b (null if empty) with the pair k -> v added. */
+        static Bucket plus ( Bucket b, Object k, Object v )
+        {
+            int       n  = ( b == null ) ? 0 : b.key.length;
+            Object [] ks = ( b == null ) ? new Object[ 1 ] : Arrays.copyOf ( b.key, n + 1 );
+            Object [] vs = ( b == null ) ? new Object[ 1 ] : Arrays.copyOf ( b.value, n + 1 );
+            ks[ n ] = k;
+            vs[ n ] = v;
+            return new Bucket ( ks, vs );
+        }
+
+        /** A copy of this chain with the value at position j replaced by v. */
+        Bucket with ( int j, Object v )
+        {
+            Object [] vs = value.clone ();
+            vs[ j ] = v;
+            return new Bucket ( key, vs );
+        }
+
+        /** A copy of this chain without the pair at position j (null if none are left). */
+        Bucket minus ( int j )
+        {
+            int n = key.length - 1;
+            if ( n == 0 )
+            {
+                return null;
+            }
+            Object [] ks = Arrays.copyOf ( key, n );
+            Object [] vs = Arrays.copyOf ( value, n );
+            if ( j < n )
+            {
+                ks[ j ] = key[ n ];
+                vs[ j ] = value[ n ];
+            }
+            return new Bucket ( ks, vs );
+        }
+    }
+
+    /** The number of slots (for key-value pairs) per bucket.
+     */
+    private final int SLOTS;
+
+    /** The load factor above which a bucket is split.
+     */
+    private final double loadFactor;
+
+    /** The initial number of home buckets.
+     */
+    private final int initSize;
+
+    /** The hash table, in segments that are never moved: segment 0 holds the first
+     *  initSize buckets and each segment s > 0 holds the next initSize * 2^(s-1).
+     *  Segments are added by the splitting thread before any key can address them.
+     */
+    @SuppressWarnings ( "unchecked" )
+    private final AtomicReferenceArray <Bucket> [] segment = new AtomicReferenceArray[ 32 ];
+
+    /** The modulus for low resolution hashing (mod1, high 32 bits) and the index of the
+     *  next bucket to split (low 32 bits); mod2 is always 2 * mod1.
+     */
+    private volatile long state;
+
+    /** The lock stripes guarding updates to the buckets.
+     */
+    private final Object [] lock = new Object[ STRIPES ];
+
+    /** The split token, held by the thread splitting buckets (or taking a snapshot).
+     */
+    private final AtomicBoolean splitting = new AtomicBoolean ();
+
+    /** The number of key-value pairs stored in the hash table.
+     */
+    private final AtomicInteger keyCount = new AtomicInteger ();
+
+    /********************************************************************************
+     * Construct a concurrent hash table that uses Linear Hashing, with 4 initial home
+     * buckets, LinHashMap.DEFAULT_SLOTS slots per bucket and the default load factor.
+     */
+    public ConcurrentLinHashMap ()
+    {
+        this ( 4, LinHashMap.DEFAULT_SLOTS, LinHashMap.DEFAULT_LOAD_FACTOR );
+    }
+
+    /********************************************************************************
+     * Construct a concurrent hash table that uses Linear Hashing.
+     * @param _initSize   the initial number of home buckets (e.g., 4)
+     * @param slots       the number of slots per bucket
+     * @param loadFactor  the load (keys per home bucket slot) above which to split
+     */
+    public ConcurrentLinHashMap ( int _initSize, int slots, double _loadFactor )
+    {
+        if ( _initSize < 1 || slots < 1 || ! ( _loadFactor > 0.0 ) )
+        {
+            throw new IllegalArgumentException ( "ConcurrentLinHashMap: bad initSize " + _initSize + ", slots " + slots
+                                               + " or loadFactor " + _loadFactor );
+        }
+        SLOTS      = slots;
+        loadFactor = _loadFactor;
+        initSize   = _initSize;
+        segment[ 0 ] = new AtomicReferenceArray <> ( initSize );
+        state        = ( long ) initSize << 32;
+
+        for ( int i = 0; i < STRIPES; i++ )
+        {
+            lock[ i ] = new Object ();
+        }
+    }
+
+    /********************************************************************************
+     * Return a snapshot of the entries, taken while splits are held off (so each key
+     * present throughout is seen exactly once).  Updates made during the snapshot
+     * may or may not be in it.
+     * @return  the (unmodifiable) set of entries
+     */
+    @SuppressWarnings ( "unchecked" )
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        List <Map.Entry <K, V>> entries = new ArrayList <> ();
+
+        while ( ! splitting.compareAndSet ( false, true ) )
+        {
+            Thread.onSpinWait ();
+        }
+        try
+        {
+            for ( int i = 0, n = buckets ( state ); i < n; i++ )
+            {
+                Bucket b = bucket ( i );
+                for ( int j = 0; b != null && j < b.key.length; j++ )
+                {
+                    entries.add ( new AbstractMap.SimpleImmutableEntry <> ( ( K ) b.key[ j ], ( V ) b.value[ j ] ) );
+                }
+            }
+        }
+        finally
+        {
+            splitting.set ( false );
+        }
+
+        return new AbstractSet <Map.Entry <K, V>> ()
+        {
+            public Iterator <Map.Entry <K, V>> iterator () { return Collections.unmodifiableList ( entries ).iterator (); }
+
+            public int size ()                             { return entries.size (); }
+        };
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table.  No locks are taken.
+     * @param key  the key used for look up
+     * @return  the value associated with the key or null if not found
+     */
+    @SuppressWarnings ( "unchecked" )
+    public V get ( Object key )
+    {
+        int hc = hash ( key );
+
+        for ( ;; )
+        {
+            int    i = address ( hc, state );
+            Bucket b = bucket ( i );
+
+            if ( address ( hc, state ) != i )
+            {
+                continue;                                   // a split may have moved the key
+            }
+            int j = ( b == null ) ? -1 : b.find ( key );
+            return ( j < 0 ) ? null : ( V ) b.value[ j ];
+        }
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table holds the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey ( Object key )
+    {
+        return get ( key ) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.
+     * @param key    the key to insert
+     * @param value  the value to insert (not null)
+     * @return  the previous value for the key, or null if there was none
+     */
+    public V put ( K key, V value )
+    {
+        return put ( key, value, false );
+    } // put
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table unless the key is already present.
+     * @param key    the key to insert
+     * @param value  the value to insert (not null)
+     * @return  the current value for the key, or null if the pair was put
+     */
+    public V putIfAbsent ( K key, V value )
+    {
+        return put ( key, value, true );
+    } // putIfAbsent
+
+    /********************************************************************************
+     * Put the key-value pair in its bucket chain, under the bucket's lock, and then
+     * split buckets if the load has passed the load factor.
+     * @param key           the key to insert
+     * @param value         the value to insert
+     * @param onlyIfAbsent  whether to leave an existing value alone
+     * @return  the previous value for the key, or null if there was none
+     */
+    @SuppressWarnings ( "unchecked" )
+    private V put ( K key, V value, boolean onlyIfAbsent )
+    {
+        int hc = hash ( key );
+        Objects.requireNonNull ( value );
+
+        for ( ;; )
+        {
+            int i = address ( hc, state );
+
+            synchronized ( lockFor ( i ) )
+            {
+                if ( address ( hc, state ) != i )
+                {
+                    continue;                               // the bucket split meanwhile
+                }
+                Bucket b = bucket ( i );
+                int    j = ( b == null ) ? -1 : b.find ( key );
+
+                if ( j >= 0 )
+                {
+                    if ( ! onlyIfAbsent )
+                    {
+                        publish ( i, b.with ( j, value ) );
+                    }
+                    return ( V ) b.value[ j ];
+                }
+                publish ( i, Bucket.plus ( b, key, value ) );
+            }
+            break;
+        }
+
+        if ( keyCount.incrementAndGet () > loadFactor * SLOTS * buckets ( state ) )
+        {
+            grow ();
+        }
+        return null;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if there was none
+     */
+    @SuppressWarnings ( "unchecked" )
+    public V remove ( Object key )
+    {
+        int hc = hash ( key );
+
+        for ( ;; )
+        {
+            int i = address ( hc, state );
+
+            synchronized ( lockFor ( i ) )
+            {
+                if ( address ( hc, state ) != i )
+                {
+                    continue;                               // the bucket split meanwhile
+                }
+                Bucket b = bucket ( i );
+                int    j = ( b == null ) ? -1 : b.find ( key );
+
+                if ( j < 0 )
+                {
+                    return null;
+                }
+                publish ( i, b.minus ( j ) );
+                keyCount.decrementAndGet ();
+                return ( V ) b.value[ j ];
+            }
+        }
+    } // remove
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
+     * @return  the size of the hash table
+     */
+    public int size ()
+    {
+        return keyCount.get ();
+    } // size
+
+    /********************************************************************************
+     * Split buckets until the load is no more than the load factor, if the split
+     * token is free (otherwise the thread holding it will do the splitting).
+     */
+    private void grow ()
+    {
+        if ( ! splitting.compareAndSet ( false, true ) )
+        {
+            return;
+        }
+        try
+        {
+            while ( keyCount.get () > loadFactor * SLOTS * buckets ( state ) )
+            {
+                split ();
+            }
+        }
+        finally
+        {
+            splitting.set ( false );
+        }
+    } // grow
+
+    /********************************************************************************
+     * Split the bucket at the split pointer (called with the split token held): the
+     * pairs whose h2 address is the new bucket (split + mod1) are published there,
+     * the split pointer advances (starting a new round, doubling the moduli, once
+     * all mod1 buckets have been split), and then the old bucket drops those pairs.
+     */
+    private void split ()
+    {
+        long s    = state;
+        int  mod1 = ( int ) ( s >>> 32 );
+        int  sp   = ( int ) s;
+        int  nu   = sp + mod1;
+
+        int seg = 32 - Integer.numberOfLeadingZeros ( nu / initSize );  // nu >= initSize, so seg > 0
+        if ( segment[ seg ] == null )
+        {
+            segment[ seg ] = new AtomicReferenceArray <> ( initSize << ( seg - 1 ) );
+        }
+
+        synchronized ( lockFor ( sp ) )
+        {
+            synchronized ( lockFor ( nu ) )
+            {
+                Bucket old  = bucket ( sp );
+                Bucket stay = null, move = null;
+
+                for ( int j = 0; old != null && j < old.key.length; j++ )
+                {
+                    if ( Math.floorMod ( hash ( old.key[ j ] ), 2 * mod1 ) == sp )
+                    {
+                        stay = Bucket.plus ( stay, old.key[ j ], old.value[ j ] );
+                    }
+                    else
+                    {
+                        move = Bucket.plus ( move, old.key[ j ], old.value[ j ] );
+                    }
+                }
+
+                publish ( nu, move );
+                state = ( sp + 1 == mod1 ) ? ( long ) ( 2 * mod1 ) << 32 : s + 1;
+                publish ( sp, stay );
+            }
+        }
+    } // split
+
+    /********************************************************************************
+     * Return the number of home buckets for the given state (mod1 + split).
+     * @param s  the packed moduli and split pointer
+     * @return  the number of home buckets
+     */
+    private static int buckets ( long s )
+    {
+        return ( int ) ( s >>> 32 ) + ( int ) s;
+    } // buckets
+
+    /********************************************************************************
+     * Return the home bucket for a hash code in the given state: h for buckets not
+     * yet split in this round, h2 for those before the split pointer.
+     * @param hc  the (spread) hash code of the key
+     * @param s   the packed moduli and split pointer
+     * @return  the location of the bucket chain for the key
+     */
+    private static int address ( int hc, long s )
+    {
+        int mod1 = ( int ) ( s >>> 32 );
+        int i    = Math.floorMod ( hc, mod1 );
+        return ( i < ( int ) s ) ? Math.floorMod ( hc, 2 * mod1 ) : i;
+    } // address
+
+    /********************************************************************************
+     * Return the key's hash code with its high bits folded into the low ones.
+     * @param key  the key to hash (not null)
+     * @return  the spread hash code
+     */
+    private static int hash ( Object key )
+    {
+        int hc = key.hashCode ();
+        return hc ^ ( hc >>> 16 );
+    } // hash
+
+    /********************************************************************************
+     * Return the bucket chain at the given location (null if empty).
+     * @param b  the location of the bucket
+     * @return  the bucket chain
+     */
+    private Bucket bucket ( int b )
+    {
+        int q = b / initSize;
+        int s = 32 - Integer.numberOfLeadingZeros ( q );
+        return segment[ s ].get ( ( s == 0 ) ? b : b - ( initSize << ( s - 1 ) ) );
+    } // bucket
+
+    /********************************************************************************
+     * Publish a new bucket chain at the given location.
+     * @param b      the location of the bucket
+     * @param chain  the new bucket chain (null if empty)
+     */
+    private void publish ( int b, Bucket chain )
+    {
+        int q = b / initSize;
+        int s = 32 - Integer.numberOfLeadingZeros ( q );
+        segment[ s ].set ( ( s == 0 ) ? b : b - ( initSize << ( s - 1 ) ), chain );
+    } // publish
+
+    /********************************************************************************
+     * Return the lock stripe guarding the given bucket.
+     * @param b  the location of the bucket
+     * @return  the lock object
+     */
+    private Object lockFor ( int b )
+    {
+        return lock[ b & ( STRIPES - 1 ) ];
+    } // lockFor
+
+    /********************************************************************************
+     * The main method used for testing.  Several threads insert interleaved keys
+     * while another looks them up; then lookups by several threads are timed against
+     * a synchronized HashMap.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main ( String [] args ) throws InterruptedException
+    {
+        int totalKeys = 1000000;
+        int nThreads  = Runtime.getRuntime ().availableProcessors ();
+
+        if ( args.length >= 1 )
+        {
+            totalKeys = Integer.valueOf ( args [0] );
+        }
+
+        ConcurrentLinHashMap <Integer, Integer> map = new ConcurrentLinHashMap <> ();
+        Thread [] writers = new Thread[ nThreads ];
+        int       n       = totalKeys;
+
+        for ( int t = 0; t < nThreads; t++ )
+        {
+            int id = t;
+            writers[ t ] = new Thread ( () -> {
+                for ( int i = id; i < n; i += nThreads )
+                {
+                    map.put ( i, i * i );
+                }
+            } );
+            writers[ t ].start ();
+        }
+
+        int [] found = new int[ 1 ];
+        Thread reader = new Thread ( () -> {
+            for ( int i = 0; i < n; i++ )
+            {
+                Integer v = map.get ( i );
+                if ( v != null && v != i * i ) out.println ( "wrong value for key " + i );
+                if ( v != null ) found[ 0 ]++;
+            }
+        } );
+        reader.start ();
+
+        for ( Thread w : writers ) w.join ();
+        reader.join ();
+
+        for ( int i = 0; i < n; i++ )
+        {
+            if ( map.get ( i ) == null ) out.println ( "missing key " + i );
+        }
+        out.println ( "-------------------------------------------" );
+        out.println ( "size = " + map.size () + ", snapshot = " + map.entrySet ().size ()
+                    + ", found while loading = " + found[ 0 ] );
+
+        Map <Integer, Integer> sync = Collections.synchronizedMap ( new HashMap <> ( map ) );
+
+        for ( Map <Integer, Integer> m : List.of ( map, sync, map, sync ) )
+        {
+            Thread [] readers = new Thread[ nThreads ];
+            long      t0      = System.nanoTime ();
+
+            for ( int t = 0; t < nThreads; t++ )
+            {
+                readers[ t ] = new Thread ( () -> {
+                    Random rng = new Random ();
+                    for ( int i = 0; i < n; i++ )
+                    {
+                        m.get ( rng.nextInt ( n ) );
+                    }
+                } );
+                readers[ t ].start ();
+            }
+            for ( Thread r : readers ) r.join ();
+
+            out.println ( ( m == map ? "ConcurrentLinHashMap" : "synchronized HashMap" ) + ": " + nThreads + " threads x "
+                        + n + " lookups in " + ( System.nanoTime () - t0 ) / 1000000 + " ms" );
+        }
+    } // main
+
+} // ConcurrentLinHashMap class
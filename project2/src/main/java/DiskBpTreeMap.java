@@ -0,0 +1,893 @@
+/************************************************************************************
+    @file DiskBpTreeMap.java
+*/
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+    The DiskBpTreeMap class provides B+Tree maps whose nodes are fixed-size pages in
+    a random access file, so the map need not fit in memory.  Child and sibling
+    references are page numbers.  Recently used pages are kept, decoded, in a bounded
+    buffer pool (least recently used pages are written back, if changed, and dropped).
+    Page 0 is a header recording the root, the first leaf and the number of pages and
+    keys, so reopening a saved map reads only the header.
+
+    Keys and values are stored through fixed-width codecs (see Codec); the key codec
+    must be byte-comparable, since pages are searched by comparing the encodings.  As
+    in BpTreeMap, each divider key is at least the largest key in its left subtree
+    (and less than every key in the right one).
+
+    Keys are compressed when written to a page, so more of them fit: the prefix
+    shared by all the keys in the page is stored once (sorted neighbours such as
+    KeyType ( "Star_Wars", 1977 ) and KeyType ( "Star_Wars_2", 1980 ) share long
+    prefixes), and the trailing zero bytes of each key (e.g., string padding) are
+    dropped.  When a leaf splits, the divider passed up is the shortest key that
+    separates the two halves rather than a whole key, so internal pages hold short
+    dividers and fan out more.  A node splits once its compressed form no longer fits
+    in a page.  In memory (in the buffer pool) keys are kept whole.  Removal
+    does not rebalance: a leaf may be left sparse (or empty) and is skipped over by
+    scans.  The map is not thread-safe.  Call flush (or close) to make changes durable.
+*/
+public class DiskBpTreeMap <K extends Comparable <K>, V>
+    extends AbstractMap <K, V>
+    implements Serializable
+{
+    /** The default number of bytes in a page
+    */
+    public static final int PAGE_SIZE = 4096;
+
+    /** The default number of pages the buffer pool holds
+    */
+    public static final int POOL_PAGES = 256;
+
+    /** Identifies the files holding disk B+Trees
+    */
+    private static final int MAGIC = 0x42505432;            // "BPT2"
+
+    /** Bytes at the start of every node page: leaf flag, number of keys, next leaf
+        and the length of the shared key prefix
+    */
+    private static final int NODE_HEADER = 1 + 2 + 4 + 2;
+
+    /** Bytes giving the length of each stored (truncated) key
+    */
+    private static final int KEY_LENGTH = 2;
+
+    /** No page (e.g., the next leaf after the last one)
+    */
+    private static final int NIL = -1;
+
+    /** The file holding the pages
+    */
+    private final File path;
+
+    /** The codec for keys (byte-comparable)
+    */
+    private final Codec <K> keyCodec;
+
+    /** The codec for values
+    */
+    private final Codec <V> valueCodec;
+
+    /** The number of bytes in a page
+    */
+    private final int pageSize;
+
+    /** The maximum number of pages kept in the buffer pool
+    */
+    private final int poolPages;
+
+    /********************************************************************************
+        This inner class holds a node page decoded into memory.  Keys are kept in
+        their (byte-comparable) encoded form.
+    */
+    private static class Node
+    {
+        final int              id;
+        final boolean          isLeaf;
+        final List <byte []>   key   = new ArrayList <> ();
+        final List <byte []>   val   = new ArrayList <> ();     // leaves
+        final List <Integer>   child = new ArrayList <> ();     // internal nodes
+        int                    next  = NIL;                     // leaves
+        boolean                dirty;
+
+        Node( int _id, boolean _isLeaf )
+        {
+            id     = _id;
+            isLeaf = _isLeaf;
+        }
+
+        int nKeys() { return key.size(); }
+
+        /****************************************************************************
+            Find the "<=" match position in this node by binary search.
+            @param k  the (encoded) key to be matched.
+            @return  the position of match within node, where nKeys indicates no match
+        */
+        int find( byte [] k )
+        {
+            int lo = 0, hi = key.size();
+            while( lo < hi )
+            {
+                int mid = ( lo + hi ) >>> 1;
+                if( Arrays.compareUnsigned( k, key.get( mid ) ) <= 0 )
+                {
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+    }
+
+    /** The file the pages are read from and written to
+    */
+    private transient RandomAccessFile file;
+
+    /** The buffer pool, in least to most recently used order
+    */
+    private transient LinkedHashMap <Integer, Node> pool;
+
+    /** The page number of the root
+    */
+    private transient int rootId;
+
+    /** The page number of the first (leftmost) leaf
+    */
+    private transient int firstLeafId;
+
+    /** The number of pages in the file (including the header)
+    */
+    private transient int nPages;
+
+    /** The number of keys in the map
+    */
+    private transient int keyCount;
+
+    /** The counters for the number of pages read from and written to the file
+    */
+    private transient int reads, writes;
+
+    /********************************************************************************
+        Open the disk B+Tree map stored in the given file, creating an empty one if the
+        file is new or empty, using the default page and pool sizes.
+        @param _path        the file holding the pages
+        @param _keyCodec    the codec for keys (byte-comparable)
+        @param _valueCodec  the codec for values
+    */
+    public DiskBpTreeMap( File _path, Codec <K> _keyCodec, Codec <V> _valueCodec )
+    {
+        this( _path, _keyCodec, _valueCodec, PAGE_SIZE, POOL_PAGES );
+    }
+
+    /********************************************************************************
+        Open the disk B+Tree map stored in the given file, creating an empty one if the
+        file is new or empty.
+        @param _path        the file holding the pages
+        @param _keyCodec    the codec for keys (byte-comparable)
+        @param _valueCodec  the codec for values
+        @param _pageSize    the number of bytes in a page
+        @param _poolPages   the number of pages kept in memory (at least 8)
+    */
+    public DiskBpTreeMap( File _path, Codec <K> _keyCodec, Codec <V> _valueCodec, int _pageSize, int _poolPages )
+    {
+        path       = _path;
+        keyCodec   = _keyCodec;
+        valueCodec = _valueCodec;
+        pageSize   = _pageSize;
+        poolPages  = Math.max( 8, _poolPages );
+
+        int ks = keyCodec.size(), vs = valueCodec.size();
+        if( ( pageSize - NODE_HEADER - ks ) / ( KEY_LENGTH + ks + vs ) < 3 ||
+            ( pageSize - NODE_HEADER - ks - 4 ) / ( KEY_LENGTH + ks + 4 ) < 3 )
+        {
+            throw new IllegalArgumentException( "DiskBpTreeMap: page size " + pageSize + " holds fewer than 3 entries" );
+        }
+        open();
+    }
+
+    /********************************************************************************
+        Open the file, reading its header, or initialize it if it is empty.
+    */
+    private void open()
+    {
+        pool = new LinkedHashMap <> ( 16, 0.75f, true );
+        try
+        {
+            file = new RandomAccessFile( path, "rw" );
+            if( file.length() == 0 )
+            {
+                init();
+                return;
+            }
+
+            file.seek( 0 );
+            if( file.readInt() != MAGIC || file.readInt() != pageSize ||
+                file.readInt() != keyCodec.size() || file.readInt() != valueCodec.size() )
+            {
+                throw new IllegalArgumentException( "DiskBpTreeMap: " + path + " does not hold a matching B+Tree" );
+            }
+            rootId      = file.readInt();
+            firstLeafId = file.readInt();
+            nPages      = file.readInt();
+            keyCount    = file.readInt();
+        }
+        catch( IOException ex )
+        {
+            throw new UncheckedIOException( "DiskBpTreeMap.open: " + path, ex );
+        }
+    }
+
+    /********************************************************************************
+        Start an empty tree: the header page followed by an empty root leaf.
+    */
+    private void init() throws IOException
+    {
+        file.setLength( 0 );
+        pool.clear();
+        nPages      = 1;
+        keyCount    = 0;
+        Node root   = allocate( true );
+        rootId      = root.id;
+        firstLeafId = root.id;
+        writeHeader();
+    }
+
+    /********************************************************************************
+        Write back the changed pages in the buffer pool and the header.
+    */
+    public void flush()
+    {
+        try
+        {
+            for( Node n : pool.values() )
+            {
+                if( n.dirty )
+                {
+                    writePage( n );
+                }
+            }
+            writeHeader();
+        }
+        catch( IOException ex )
+        {
+            throw new UncheckedIOException( "DiskBpTreeMap.flush: " + path, ex );
+        }
+    }
+
+    /********************************************************************************
+        Flush the map and close its file.  The map may not be used afterward.
+    */
+    public void close()
+    {
+        flush();
+        try
+        {
+            file.close();
+        }
+        catch( IOException ex )
+        {
+            out.println( "DiskBpTreeMap.close: " + ex );
+        }
+    }
+
+    /********************************************************************************
+        Save the map by flushing it to its file; only the file name, codecs and sizes
+        are serialized.
+        @param oos  the stream to write to
+    */
+    private void writeObject( ObjectOutputStream oos ) throws IOException
+    {
+        flush();
+        oos.defaultWriteObject();
+    }
+
+    /********************************************************************************
+        Restore a map saved by writeObject by reopening its file (reading the header).
+        @param ois  the stream to read from
+    */
+    private void readObject( ObjectInputStream ois ) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject();
+        open();
+    }
+
+    //--------------------------------------------------------------------------------
+    // Map Operations
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+        Return a (live) set view of the entries; its iterator follows the leaf links,
+        so entries come out in key order.
+        @return  the set view of the map
+    */
+    public Set <Map.Entry <K, V>> entrySet()
+    {
+        return new AbstractSet <Map.Entry <K, V>> ()
+        {
+            public Iterator <Map.Entry <K, V>> iterator() { return rangeIterator( null, false, null, false ); }
+
+            public int size() { return keyCount; }
+        };
+    }
+
+    /********************************************************************************
+        Given the key, look up the value in the map.
+        @param key  the key used for look up
+        @return  the value associated with the key or null if not found
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V get( Object key )
+    {
+        byte [] k    = keyCodec.encode( ( K ) key );
+        Node    leaf = findLeaf( k );
+        int     i    = leaf.find( k );
+
+        if( i < leaf.nKeys() && Arrays.equals( k, leaf.key.get( i ) ) )
+        {
+            return valueCodec.decode( leaf.val.get( i ) );
+        }
+        return null;
+    }
+
+    /********************************************************************************
+        Determine whether the map holds the given key.
+        @param key  the key to look for
+        @return  whether the key is present
+    */
+    public boolean containsKey( Object key )
+    {
+        return get( key ) != null;
+    }
+
+    /********************************************************************************
+        Put the key-value pair in the map.
+        @param key    the key to insert
+        @param value  the value to insert
+        @return  the previous value for this key, or null if there was none
+    */
+    public V put( K key, V value )
+    {
+        byte [] k = keyCodec.encode( key );
+        byte [] v = valueCodec.encode( value );
+
+        V [] old = newHolder();
+        Object [] split = insert( k, v, page( rootId ), old );
+
+        if( split != null )                                 // grow a new root
+        {
+            Node root = allocate( false );
+            root.key.add( ( byte [] ) split[ 0 ] );
+            root.child.add( rootId );
+            root.child.add( ( Integer ) split[ 1 ] );
+            rootId = root.id;
+        }
+        if( old[ 0 ] == null )
+        {
+            keyCount++;
+        }
+        return old[ 0 ];
+    }
+
+    /********************************************************************************
+        Remove the key (and its value) from the map.  The leaf is not rebalanced.
+        @param key  the key to remove
+        @return  the value that was associated with the key, or null if there was none
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V remove( Object key )
+    {
+        byte [] k    = keyCodec.encode( ( K ) key );
+        Node    leaf = findLeaf( k );
+        int     i    = leaf.find( k );
+
+        if( i < leaf.nKeys() && Arrays.equals( k, leaf.key.get( i ) ) )
+        {
+            V old = valueCodec.decode( leaf.val.get( i ) );
+            leaf.key.remove( i );
+            leaf.val.remove( i );
+            touch( leaf );
+            keyCount--;
+            return old;
+        }
+        return null;
+    }
+
+    /********************************************************************************
+        Remove all the keys, truncating the file to an empty tree.
+    */
+    public void clear()
+    {
+        try
+        {
+            init();
+        }
+        catch( IOException ex )
+        {
+            throw new UncheckedIOException( "DiskBpTreeMap.clear: " + path, ex );
+        }
+    }
+
+    /********************************************************************************
+        Return the size (number of keys) in the map.
+        @return  the size of the map
+    */
+    public int size()
+    {
+        return keyCount;
+    }
+
+    /********************************************************************************
+        Return an iterator over the entries whose keys lie in the given range, in key
+        order.  It descends once to the leaf where the range starts and then follows
+        the leaf links, fetching each leaf through the buffer pool.
+        @param lo    the low end of the range (null for no lower bound)
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range (null for no upper bound)
+        @param hiIn  whether the high end is included
+        @return  an iterator over the entries in the range
+    */
+    public Iterator <Map.Entry <K, V>> rangeIterator( K lo, boolean loIn, K hi, boolean hiIn )
+    {
+        byte [] loK = ( lo == null ) ? null : keyCodec.encode( lo );
+        byte [] hiK = ( hi == null ) ? null : keyCodec.encode( hi );
+
+        Node start = ( loK == null ) ? page( firstLeafId ) : findLeaf( loK );
+        int  i     = ( loK == null ) ? 0 : start.find( loK );
+
+        if( loK != null && !loIn && i < start.nKeys() && Arrays.equals( loK, start.key.get( i ) ) )
+        {
+            i++;
+        }
+        int first = start.id, pos = i;
+
+        return new Iterator <Map.Entry <K, V>> ()
+        {
+            int id = first;
+            int j  = pos;
+
+            public boolean hasNext()
+            {
+                Node n = ( id == NIL ) ? null : page( id );
+                while( n != null && j >= n.nKeys() )
+                {
+                    id = n.next;
+                    j  = 0;
+                    n  = ( id == NIL ) ? null : page( id );
+                }
+                if( n == null )
+                {
+                    return false;
+                }
+                if( hiK != null )
+                {
+                    int cmp = Arrays.compareUnsigned( n.key.get( j ), hiK );
+                    if( cmp > 0 || ( cmp == 0 && !hiIn ) )
+                    {
+                        id = NIL;
+                        return false;
+                    }
+                }
+                return true;
+            }
+
+            public Map.Entry <K, V> next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                Node n = page( id );
+                Map.Entry <K, V> e = new SimpleEntry <> ( keyCodec.decode( n.key.get( j ) ),
+                                                          valueCodec.decode( n.val.get( j ) ) );
+                j++;
+                return e;
+            }
+        };
+    }
+
+    //--------------------------------------------------------------------------------
+    // Tree Operations
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+        Descend from the root to the leaf where the key belongs.
+        @param k  the (encoded) key
+        @return  the leaf
+    */
+    private Node findLeaf( byte [] k )
+    {
+        Node n = page( rootId );
+        while( !n.isLeaf )
+        {
+            n = page( n.child.get( n.find( k ) ) );
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Recursive helper function for inserting a key in the subtree rooted at node n.
+        A node whose page overflows is split; its right half moves to a new page.
+        @param k    the (encoded) key
+        @param v    the (encoded) value
+        @param n    the current node
+        @param old  receives the value replaced, if the key was already present
+        @return  the divider and page number of the new right node if n split, else null
+    */
+    private Object [] insert( byte [] k, byte [] v, Node n, V [] old )
+    {
+        int i = n.find( k );
+
+        if( n.isLeaf )
+        {
+            if( i < n.nKeys() && Arrays.equals( k, n.key.get( i ) ) )
+            {
+                old[ 0 ] = valueCodec.decode( n.val.get( i ) );
+                n.val.set( i, v );
+                touch( n );
+                return null;
+            }
+            n.key.add( i, k );
+            n.val.add( i, v );
+        }
+        else
+        {
+            Object [] split = insert( k, v, page( n.child.get( i ) ), old );
+            if( split == null )
+            {
+                return null;
+            }
+            n.key.add( i, ( byte [] ) split[ 0 ] );
+            n.child.add( i + 1, ( Integer ) split[ 1 ] );
+        }
+        touch( n );
+
+        return ( encodedSize( n ) > pageSize ) ? split( n ) : null;
+    }
+
+    /********************************************************************************
+        Split the overflowing node n, moving the upper half of its keys to a new page.
+        A leaf's divider is its last remaining key; an internal node's middle key
+        moves up as the divider.
+        @param n  the node to split
+        @return  the divider and the page number of the new right node
+    */
+    private Object [] split( Node n )
+    {
+        Node    rt   = allocate( n.isLeaf );
+        int     half = n.nKeys() / 2;
+        byte [] div;
+
+        if( n.isLeaf )
+        {
+            int keep = n.nKeys() - half;
+            moveTail( n.key, keep, rt.key );
+            moveTail( n.val, keep, rt.val );
+            rt.next = n.next;
+            n.next  = rt.id;
+            div     = separator( n.key.get( keep - 1 ), rt.key.get( 0 ) );
+        }
+        else
+        {
+            moveTail( n.key, half + 1, rt.key );
+            moveTail( n.child, half + 1, rt.child );
+            div = n.key.remove( half );
+        }
+        touch( n );
+        touch( rt );
+        return new Object [] { div, rt.id };
+    }
+
+    /********************************************************************************
+        Return the shortest divider s (with trailing zero bytes dropped) such that
+        a <= s < b: b cut just past the first byte where it differs from a, unless
+        the rest of b is all zeros (then the cut would equal b), in which case a.
+        @param a  the last key of the left node
+        @param b  the first key of the right node (a < b)
+        @return  the divider, padded with zeros to the width of a key
+    */
+    private static byte [] separator( byte [] a, byte [] b )
+    {
+        int d = Arrays.mismatch( a, b );
+        for( int j = d + 1; j < b.length; j++ )
+        {
+            if( b[ j ] != 0 )
+            {
+                return Arrays.copyOf( Arrays.copyOf( b, d + 1 ), b.length );
+            }
+        }
+        return a;
+    }
+
+    /********************************************************************************
+        Move the elements of list from position 'from' on to the (empty) list to.
+    */
+    private static <T> void moveTail( List <T> from, int pos, List <T> to )
+    {
+        List <T> tail = from.subList( pos, from.size() );
+        to.addAll( tail );
+        tail.clear();
+    }
+
+    //--------------------------------------------------------------------------------
+    // Pages and the Buffer Pool
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+        Return the length of the prefix shared by all the keys of node n (as they are
+        sorted, that of the first and last keys).
+        @param n  the node
+        @return  the length of the common prefix
+    */
+    private static int commonPrefix( Node n )
+    {
+        if( n.nKeys() < 2 )
+        {
+            return 0;
+        }
+        byte [] a = n.key.get( 0 ), b = n.key.get( n.nKeys() - 1 );
+        int     d = Arrays.mismatch( a, b );
+        return ( d < 0 ) ? a.length : d;
+    }
+
+    /********************************************************************************
+        Return the length of key k once its trailing zero bytes are dropped, but not
+        less than from.
+        @param k     the key
+        @param from  the length of the part already accounted for (the prefix)
+        @return  the truncated length
+    */
+    private static int trimmed( byte [] k, int from )
+    {
+        int n = k.length;
+        while( n > from && k[ n - 1 ] == 0 )
+        {
+            n--;
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Return the number of bytes node n takes when written (compressed) to a page.
+        @param n  the node
+        @return  its encoded size
+    */
+    private int encodedSize( Node n )
+    {
+        int p    = commonPrefix( n );
+        int size = NODE_HEADER + p + ( n.isLeaf ? 0 : 4 );
+        int per  = KEY_LENGTH + ( n.isLeaf ? valueCodec.size() : 4 );
+
+        for( byte [] k : n.key )
+        {
+            size += per + trimmed( k, p ) - p;
+        }
+        return size;
+    }
+
+    /********************************************************************************
+        Return the node stored in the given page, reading it into the buffer pool if
+        it is not there already.
+        @param id  the page number
+        @return  the node
+    */
+    private Node page( int id )
+    {
+        Node n = pool.get( id );
+        if( n == null )
+        {
+            n = readPage( id );
+            cache( n );
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Create a node in a new page at the end of the file.
+        @param isLeaf  whether the node is a leaf
+        @return  the new node
+    */
+    private Node allocate( boolean isLeaf )
+    {
+        Node n = new Node( nPages++, isLeaf );
+        touch( n );
+        return n;
+    }
+
+    /********************************************************************************
+        Mark node n as changed, (re)placing it in the buffer pool, which matters if it
+        was evicted while still in use.
+        @param n  the changed node
+    */
+    private void touch( Node n )
+    {
+        n.dirty = true;
+        cache( n );
+    }
+
+    /********************************************************************************
+        Put node n in the buffer pool as its most recently used page, evicting (and
+        writing back, if changed) the least recently used pages beyond the limit.
+        @param n  the node
+    */
+    private void cache( Node n )
+    {
+        pool.put( n.id, n );
+        if( pool.size() > poolPages )
+        {
+            Iterator <Node> it = pool.values().iterator();
+            while( pool.size() > poolPages )
+            {
+                Node victim = it.next();
+                if( victim.dirty )
+                {
+                    try
+                    {
+                        writePage( victim );
+                    }
+                    catch( IOException ex )
+                    {
+                        throw new UncheckedIOException( "DiskBpTreeMap: writing page " + victim.id, ex );
+                    }
+                }
+                it.remove();
+            }
+        }
+    }
+
+    /********************************************************************************
+        Read and decode the node stored in the given page.
+        @param id  the page number
+        @return  the node
+    */
+    private Node readPage( int id )
+    {
+        byte [] b = new byte[ pageSize ];
+        try
+        {
+            file.seek( ( long ) id * pageSize );
+            file.readFully( b );
+        }
+        catch( IOException ex )
+        {
+            throw new UncheckedIOException( "DiskBpTreeMap: reading page " + id, ex );
+        }
+        reads++;
+
+        ByteBuffer buf = ByteBuffer.wrap( b );
+        Node n  = new Node( id, buf.get() == 1 );
+        int  nk = buf.getShort() & 0xffff;
+        n.next  = buf.getInt();
+        int  p  = buf.getShort() & 0xffff;
+        int  ks = keyCodec.size(), vs = valueCodec.size();
+
+        byte [] prefix = new byte[ p ];
+        buf.get( prefix );
+        if( !n.isLeaf )
+        {
+            n.child.add( buf.getInt() );
+        }
+        for( int i = 0; i < nk; i++ )
+        {
+            byte [] k = Arrays.copyOf( prefix, ks );         // the rest stays zero
+            buf.get( k, p, buf.getShort() & 0xffff );
+            n.key.add( k );
+            if( n.isLeaf )
+            {
+                byte [] v = new byte[ vs ];
+                buf.get( v );
+                n.val.add( v );
+            }
+            else
+            {
+                n.child.add( buf.getInt() );
+            }
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Encode node n and write it to its page.
+        @param n  the node
+    */
+    private void writePage( Node n ) throws IOException
+    {
+        int        p   = commonPrefix( n );
+        ByteBuffer buf = ByteBuffer.allocate( pageSize );
+        buf.put( ( byte ) ( n.isLeaf ? 1 : 0 ) ).putShort( ( short ) n.nKeys() ).putInt( n.next ).putShort( ( short ) p );
+
+        if( p > 0 )
+        {
+            buf.put( n.key.get( 0 ), 0, p );
+        }
+        if( !n.isLeaf )
+        {
+            buf.putInt( n.child.get( 0 ) );
+        }
+        for( int i = 0; i < n.nKeys(); i++ )
+        {
+            byte [] k = n.key.get( i );
+            int     t = trimmed( k, p );
+            buf.putShort( ( short ) ( t - p ) ).put( k, p, t - p );
+            if( n.isLeaf )
+            {
+                buf.put( n.val.get( i ) );
+            }
+            else
+            {
+                buf.putInt( n.child.get( i + 1 ) );
+            }
+        }
+        file.seek( ( long ) n.id * pageSize );
+        file.write( buf.array() );
+        n.dirty = false;
+        writes++;
+    }
+
+    /********************************************************************************
+        Write the header page (page 0).
+    */
+    private void writeHeader() throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate( pageSize );
+        buf.putInt( MAGIC ).putInt( pageSize ).putInt( keyCodec.size() ).putInt( valueCodec.size() )
+           .putInt( rootId ).putInt( firstLeafId ).putInt( nPages ).putInt( keyCount );
+        file.seek( 0 );
+        file.write( buf.array() );
+    }
+
+    @SuppressWarnings ( "unchecked" )
+    private V [] newHolder() { return ( V [] ) new Object[ 1 ]; }
+
+    /********************************************************************************
+        The main method used for testing.  It fills a map with more pages than the
+        buffer pool holds, reopens the file and checks every key.
+        @param  the command-line arguments (args [0] gives number of keys to insert)
+    */
+    public static void main( String [] args ) throws IOException
+    {
+        int totalKeys = 100000;
+
+        if( args.length == 1 )
+        {
+            totalKeys = Integer.valueOf ( args[ 0 ] );
+        }
+
+        File f = File.createTempFile( "bptree", ".idx" );
+        f.deleteOnExit();
+
+        DiskBpTreeMap <Integer, Long> map = new DiskBpTreeMap <> ( f, Codec.INTEGER, Codec.LONG, 1024, 16 );
+        Random rng = new Random( 1 );
+        for( int i = 0; i < totalKeys; i++ )
+        {
+            int k = rng.nextInt( 4 * totalKeys );
+            map.put( k, ( long ) k * k );
+        }
+        int size = map.size();
+        map.close();
+
+        map = new DiskBpTreeMap <> ( f, Codec.INTEGER, Codec.LONG, 1024, 16 );
+        int seen = 0, prev = Integer.MIN_VALUE;
+        for( Map.Entry <Integer, Long> e : map.entrySet() )
+        {
+            if( e.getKey() <= prev || e.getValue() != ( long ) e.getKey() * e.getKey() )
+            {
+                out.println( "bad entry " + e );
+            }
+            prev = e.getKey();
+            seen++;
+        }
+        out.println( "-------------------------------------------" );
+        out.println( "size = " + size + ", reopened size = " + map.size() + ", iterated = " + seen );
+        out.println( "pages = " + map.nPages + ", page reads = " + map.reads + ", page writes = " + map.writes );
+        map.close();
+    }
+
+} // DiskBpTreeMap class
@@ -0,0 +1,842 @@
+/************************************************************************************
+ * @file DiskLinHashMap.java
+ */
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+ * This class provides hash maps that use the Linear Hashing algorithm (see LinHashMap)
+ * with their buckets stored as fixed-size pages in a random access file, so the map
+ * need not fit in memory.  A bucket page holds its number of pairs, the page number
+ * of its overflow bucket and as many (SLOTS) encoded key-value pairs as fit in a
+ * page.  A separate directory file records the moduli, the split pointer, the number
+ * of keys and the page of each home bucket (plus pages freed for reuse).  The
+ * directory is kept in memory and written back by flush, so reopening a saved map
+ * reads only the directory.  A lookup then reads about one page, or none if the
+ * bucket is among the recently used pages kept, decoded, in a small cache (least
+ * recently used pages are written back, if changed, and dropped).
+ *
+ * Keys and values are stored through fixed-width codecs (see Codec).  Keys are hashed
+ * from their encodings, so a key's bucket does not change between runs.  The map is
+ * not thread-safe.  Call flush (or close) to make changes durable.
+ */
+public class DiskLinHashMap <K, V> extends AbstractMap <K, V>
+    implements Serializable
+{
+    /** The default number of bytes in a page.
+     */
+    public static final int PAGE_SIZE = 4096;
+
+    /** The default number of pages the cache holds.
+     */
+    public static final int POOL_PAGES = 64;
+
+    /** The filename extension of the directory file (appended to the page file's name).
+     */
+    public static final String DIR_EXT = ".dir";
+
+    /** The initial number of home buckets.
+     */
+    private static final int INIT_SIZE = 4;
+
+    /** Identifies the directory files of disk linear hash maps.
+     */
+    private static final int MAGIC = 0x4c484431;            // "LHD1"
+
+    /** Bytes at the start of every bucket page: number of pairs and overflow page.
+     */
+    private static final int BUCKET_HEADER = 2 + 4;
+
+    /** No page (e.g., the overflow of the last bucket in a chain).
+     */
+    private static final int NIL = -1;
+
+    /** The file holding the bucket pages.
+     */
+    private final File path;
+
+    /** The file holding the directory.
+     */
+    private final File dirPath;
+
+    /** The codec for keys.
+     */
+    private final Codec <K> keyCodec;
+
+    /** The codec for values.
+     */
+    private final Codec <V> valueCodec;
+
+    /** The number of bytes in a page.
+     */
+    private final int pageSize;
+
+    /** The maximum number of pages kept in the cache.
+     */
+    private final int poolPages;
+
+    /** The load factor above which a bucket is split.
+     */
+    private final double loadFactor;
+
+    /** The number of slots (for key-value pairs) per bucket page.
+     */
+    private final int SLOTS;
+
+    /********************************************************************************
+     * This inner class holds a bucket page decoded into memory.  Keys and values are
+     * kept in their encoded form.
+     */
+    private static class Bucket
+    {
+        final int        id;
+        int              nKeys;
+        final byte [][]  key;
+        final byte [][]  value;
+        int              next = NIL;
+        boolean          dirty;
+
+        Bucket ( int _id, int slots )
+        {
+            id    = _id;
+            key   = new byte[ slots ][];
+            value = new byte[ slots ][];
+        }
+
+        /** The position of the (encoded) key k in this page, or -1 if absent. */
+        int find ( byte [] k )
+        {
+            for ( int j = 0; j < nKeys; j++ )
+            {
+                if ( Arrays.equals ( key[ j ], k ) )
+                {
+                    return j;
+                }
+            }
+            return -1;
+        }
+    }
+
+    /** The page files the buckets are read from and written to.
+     */
+    private transient RandomAccessFile file;
+
+    /** The cache of bucket pages, in least to most recently used order.
+     */
+    private transient LinkedHashMap <Integer, Bucket> pool;
+
+    /** The page number of each home bucket (the directory).
+     */
+    private transient int [] dir;
+
+    /** The pages no longer in use (available for new buckets).
+     */
+    private transient List <Integer> free;
+
+    /** The modulus for low resolution hashing.
+     */
+    private transient int mod1;
+
+    /** The index of the next bucket to split.
+     */
+    private transient int split;
+
+    /** The number of pages in the page file.
+     */
+    private transient int nPages;
+
+    /** The number of key-value pairs stored in the hash table.
+     */
+    private transient int keyCount;
+
+    /** The counters for the number of pages read from and written to the file.
+     */
+    private transient int reads, writes;
+
+    /********************************************************************************
+     * Open the disk linear hash map stored in the given page file (and its directory
+     * file, path + DIR_EXT), creating an empty one if there is no directory yet, using
+     * the default page size, cache size and load factor.
+     * @param _path        the file holding the bucket pages
+     * @param _keyCodec    the codec for keys
+     * @param _valueCodec  the codec for values
+     */
+    public DiskLinHashMap ( File _path, Codec <K> _keyCodec, Codec <V> _valueCodec )
+    {
+        this ( _path, _keyCodec, _valueCodec, PAGE_SIZE, POOL_PAGES, LinHashMap.DEFAULT_LOAD_FACTOR );
+    }
+
+    /********************************************************************************
+     * Open the disk linear hash map stored in the given page file (and its directory
+     * file, path + DIR_EXT), creating an empty one if there is no directory yet.
+     * @param _path        the file holding the bucket pages
+     * @param _keyCodec    the codec for keys
+     * @param _valueCodec  the codec for values
+     * @param _pageSize    the number of bytes in a page
+     * @param _poolPages   the number of pages kept in memory (at least 4)
+     * @param _loadFactor  the load (keys per home bucket slot) above which to split
+     */
+    public DiskLinHashMap ( File _path, Codec <K> _keyCodec, Codec <V> _valueCodec,
+                            int _pageSize, int _poolPages, double _loadFactor )
+    {
+        path       = _path;
+        dirPath    = new File ( path.getPath () + DIR_EXT );
+        keyCodec   = _keyCodec;
+        valueCodec = _valueCodec;
+        pageSize   = _pageSize;
+        poolPages  = Math.max ( 4, _poolPages );
+        loadFactor = _loadFactor;
+        SLOTS      = ( pageSize - BUCKET_HEADER ) / ( keyCodec.size () + valueCodec.size () );
+
+        if ( SLOTS < 1 || ! ( loadFactor > 0.0 ) )
+        {
+            throw new IllegalArgumentException ( "DiskLinHashMap: page size " + pageSize + " holds no pairs"
+                                               + " or bad loadFactor " + loadFactor );
+        }
+        open ();
+    }
+
+    /********************************************************************************
+     * Open the files, reading the directory, or initialize them if there is none.
+     */
+    private void open ()
+    {
+        pool = new LinkedHashMap <> ( 16, 0.75f, true );
+        try
+        {
+            file = new RandomAccessFile ( path, "rw" );
+            if ( dirPath.length () == 0 )
+            {
+                init ();
+                return;
+            }
+
+            try ( DataInputStream in = new DataInputStream ( new BufferedInputStream ( new FileInputStream ( dirPath ) ) ) )
+            {
+                if ( in.readInt () != MAGIC || in.readInt () != pageSize ||
+                     in.readInt () != keyCodec.size () || in.readInt () != valueCodec.size () )
+                {
+                    throw new IllegalArgumentException ( "DiskLinHashMap: " + dirPath + " does not hold a matching directory" );
+                }
+                mod1     = in.readInt ();
+                split    = in.readInt ();
+                keyCount = in.readInt ();
+                nPages   = in.readInt ();
+                dir      = new int[ Math.max ( 2 * mod1, INIT_SIZE ) ];
+                for ( int i = 0; i < mod1 + split; i++ )
+                {
+                    dir[ i ] = in.readInt ();
+                }
+                free = new ArrayList <> ();
+                for ( int i = in.readInt (); i > 0; i-- )
+                {
+                    free.add ( in.readInt () );
+                }
+            }
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException ( "DiskLinHashMap.open: " + path, ex );
+        }
+    } // open
+
+    /********************************************************************************
+     * Start an empty hash table of INIT_SIZE empty home buckets.
+     */
+    private void init () throws IOException
+    {
+        file.setLength ( 0 );
+        pool.clear ();
+        nPages   = 0;
+        keyCount = 0;
+        mod1     = INIT_SIZE;
+        split    = 0;
+        dir      = new int[ 2 * mod1 ];
+        free     = new ArrayList <> ();
+
+        for ( int i = 0; i < mod1; i++ )
+        {
+            dir[ i ] = allocate ().id;
+        }
+        flush ();
+    } // init
+
+    /********************************************************************************
+     * Write back the changed pages in the cache and the directory.
+     */
+    public void flush ()
+    {
+        try
+        {
+            for ( Bucket b : pool.values () )
+            {
+                if ( b.dirty )
+                {
+                    writePage ( b );
+                }
+            }
+            writeDirectory ();
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException ( "DiskLinHashMap.flush: " + path, ex );
+        }
+    } // flush
+
+    /********************************************************************************
+     * Flush the map and close its file.  The map may not be used afterward.
+     */
+    public void close ()
+    {
+        flush ();
+        try
+        {
+            file.close ();
+        }
+        catch ( IOException ex )
+        {
+            out.println ( "DiskLinHashMap.close: " + ex );
+        }
+    } // close
+
+    /********************************************************************************
+     * Save the map by flushing it to its files; only the file names, codecs and sizes
+     * are serialized.
+     * @param oos  the stream to write to
+     */
+    private void writeObject ( ObjectOutputStream oos ) throws IOException
+    {
+        flush ();
+        oos.defaultWriteObject ();
+    } // writeObject
+
+    /********************************************************************************
+     * Restore a map saved by writeObject by reopening its files (reading the directory).
+     * @param ois  the stream to read from
+     */
+    private void readObject ( ObjectInputStream ois ) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject ();
+        open ();
+    } // readObject
+
+    //--------------------------------------------------------------------------------
+    // Map Operations
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Return a (live) set view of the entries; its iterator goes through the buckets
+     * in the order of the directory, reading pages through the cache.
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <K, V>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <K, V>> ()
+        {
+            public int size ()                             { return keyCount; }
+
+            public Iterator <Map.Entry <K, V>> iterator ()
+            {
+                return new Iterator <Map.Entry <K, V>> ()
+                {
+                    int i  = 0;                             // the home bucket
+                    int id = dir[ 0 ];                      // the page in its chain
+                    int j  = 0;                             // the slot in the page
+
+                    public boolean hasNext ()
+                    {
+                        while ( id != NIL )
+                        {
+                            Bucket b = page ( id );
+                            if ( j < b.nKeys )
+                            {
+                                return true;
+                            }
+                            j  = 0;
+                            id = b.next;
+                            if ( id == NIL && ++i < mod1 + split )
+                            {
+                                id = dir[ i ];
+                            }
+                        }
+                        return false;
+                    }
+
+                    public Map.Entry <K, V> next ()
+                    {
+                        if ( ! hasNext () )
+                        {
+                            throw new NoSuchElementException ();
+                        }
+                        Bucket b = page ( id );
+                        Map.Entry <K, V> e = new AbstractMap.SimpleEntry <> ( keyCodec.decode ( b.key[ j ] ),
+                                                                             valueCodec.decode ( b.value[ j ] ) );
+                        j++;
+                        return e;
+                    }
+                };
+            }
+        };
+    } // entrySet
+
+    /********************************************************************************
+     * Given the key, look up the value in the hash table.
+     * @param key  the key used for look up
+     * @return  the value associated with the key or null if not found
+     */
+    @SuppressWarnings ( "unchecked" )
+    public V get ( Object key )
+    {
+        byte [] k = keyCodec.encode ( ( K ) key );
+
+        for ( int id = dir[ address ( k ) ]; id != NIL; )
+        {
+            Bucket b = page ( id );
+            int    j = b.find ( k );
+            if ( j >= 0 )
+            {
+                return valueCodec.decode ( b.value[ j ] );
+            }
+            id = b.next;
+        }
+        return null;
+    } // get
+
+    /********************************************************************************
+     * Determine whether the hash table holds the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey ( Object key )
+    {
+        return get ( key ) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.  The pair goes in the first bucket of
+     * its chain with a free slot, adding an overflow bucket to the chain if all are full.
+     * If the new pair pushes the load over the load factor, one bucket is split.
+     * @param key    the key to insert
+     * @param value  the value to insert
+     * @return  the previous value for the key, or null if there was none
+     */
+    public V put ( K key, V value )
+    {
+        byte [] k = keyCodec.encode ( key );
+        byte [] v = valueCodec.encode ( value );
+
+        Bucket freeB = null, last = null;
+
+        for ( int id = dir[ address ( k ) ]; id != NIL; )
+        {
+            Bucket b = page ( id );
+            int    j = b.find ( k );
+            if ( j >= 0 )
+            {
+                V old = valueCodec.decode ( b.value[ j ] );
+                b.value[ j ] = v;
+                touch ( b );
+                return old;
+            }
+            if ( freeB == null && b.nKeys < SLOTS )
+            {
+                freeB = b;
+            }
+            last = b;
+            id   = b.next;
+        }
+
+        if ( freeB == null )
+        {
+            freeB     = allocate ();
+            last      = page ( last.id );                   // (re)cache it, since allocate may have evicted it
+            last.next = freeB.id;
+            touch ( last );
+        }
+        freeB.key[ freeB.nKeys ]   = k;
+        freeB.value[ freeB.nKeys ] = v;
+        freeB.nKeys++;
+        touch ( freeB );
+        keyCount++;
+
+        if ( keyCount > loadFactor * SLOTS * ( mod1 + split ) )
+        {
+            split ();
+        }
+        return null;
+    } // put
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.  The slot is filled by the
+     * last pair in the same page, and an overflow page left empty is unlinked from
+     * its chain and freed.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if there was none
+     */
+    @SuppressWarnings ( "unchecked" )
+    public V remove ( Object key )
+    {
+        byte [] k = keyCodec.encode ( ( K ) key );
+
+        Bucket prev = null;
+
+        for ( int id = dir[ address ( k ) ]; id != NIL; )
+        {
+            Bucket b = page ( id );
+            int    j = b.find ( k );
+            if ( j >= 0 )
+            {
+                V old = valueCodec.decode ( b.value[ j ] );
+                b.nKeys--;
+                b.key[ j ]         = b.key[ b.nKeys ];
+                b.value[ j ]       = b.value[ b.nKeys ];
+                b.key[ b.nKeys ]   = null;
+                b.value[ b.nKeys ] = null;
+                touch ( b );
+                if ( b.nKeys == 0 && prev != null )
+                {
+                    prev      = page ( prev.id );
+                    prev.next = b.next;
+                    touch ( prev );
+                    free.add ( b.id );
+                }
+                keyCount--;
+                return old;
+            }
+            prev = b;
+            id   = b.next;
+        }
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the keys, truncating the page file to INIT_SIZE empty buckets.
+     */
+    public void clear ()
+    {
+        try
+        {
+            init ();
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException ( "DiskLinHashMap.clear: " + path, ex );
+        }
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
+     * @return  the size of the hash table
+     */
+    public int size ()
+    {
+        return keyCount;
+    } // size
+
+    //--------------------------------------------------------------------------------
+    // Linear Hashing
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Split the bucket at the split pointer: rehash the pairs in its chain using h2,
+     * leaving each either there or in a new bucket (split + mod1).  The old chain's
+     * home page is reused and its overflow pages freed.  Then advance the split
+     * pointer, starting a new round (doubling the moduli) once all mod1 buckets of
+     * this round have been split.
+     */
+    private void split ()
+    {
+        List <byte []> ks = new ArrayList <> (), vs = new ArrayList <> ();
+
+        for ( int id = dir[ split ]; id != NIL; )
+        {
+            Bucket b = page ( id );
+            for ( int j = 0; j < b.nKeys; j++ )
+            {
+                ks.add ( b.key[ j ] );
+                vs.add ( b.value[ j ] );
+            }
+            if ( id != dir[ split ] )
+            {
+                free.add ( id );
+                pool.remove ( id );
+            }
+            id = b.next;
+        }
+
+        Bucket home = new Bucket ( dir[ split ], SLOTS );
+        touch ( home );
+
+        if ( mod1 + split == dir.length )
+        {
+            dir = Arrays.copyOf ( dir, 2 * dir.length );
+        }
+        dir[ mod1 + split ] = allocate ().id;
+
+        for ( int j = 0; j < ks.size (); j++ )
+        {
+            append ( dir[ h2 ( ks.get ( j ) ) ], ks.get ( j ), vs.get ( j ) );
+        }
+
+        if ( ++split == mod1 )
+        {
+            split = 0;
+            mod1  = 2 * mod1;
+        }
+    } // split
+
+    /********************************************************************************
+     * Add an (encoded) key-value pair known not to be present to the end of a bucket
+     * chain, adding an overflow page if the chain is full.
+     * @param id  the page of the home bucket of the chain
+     * @param k   the encoded key
+     * @param v   the encoded value
+     */
+    private void append ( int id, byte [] k, byte [] v )
+    {
+        Bucket b = page ( id );
+        while ( b.nKeys == SLOTS )
+        {
+            if ( b.next == NIL )
+            {
+                int nu = allocate ().id;
+                b      = page ( b.id );
+                b.next = nu;
+                touch ( b );
+            }
+            b = page ( b.next );
+        }
+        b.key[ b.nKeys ]   = k;
+        b.value[ b.nKeys ] = v;
+        b.nKeys++;
+        touch ( b );
+    } // append
+
+    /********************************************************************************
+     * Return the home bucket for the (encoded) key: h for buckets not yet split in
+     * this round, h2 for those before the split pointer.
+     * @param k  the encoded key
+     * @return  the location of the bucket chain that holds (or would hold) the key
+     */
+    private int address ( byte [] k )
+    {
+        int i = h ( k );
+        return ( i < split ) ? h2 ( k ) : i;
+    } // address
+
+    /********************************************************************************
+     * Hash the (encoded) key, folding the high bits of its hash into the low ones.
+     * @param k  the encoded key
+     * @return  the spread hash code
+     */
+    private static int hash ( byte [] k )
+    {
+        int hc = Arrays.hashCode ( k );
+        return hc ^ ( hc >>> 16 );
+    } // hash
+
+    /** Hash the key using the low resolution hash function. */
+    private int h ( byte [] k )  { return Math.floorMod ( hash ( k ), mod1 ); }
+
+    /** Hash the key using the high resolution hash function. */
+    private int h2 ( byte [] k ) { return Math.floorMod ( hash ( k ), 2 * mod1 ); }
+
+    //--------------------------------------------------------------------------------
+    // Page Cache
+    //--------------------------------------------------------------------------------
+
+    /********************************************************************************
+     * Return the bucket stored in the given page, reading it into the cache if it is
+     * not there already.
+     * @param id  the page number
+     * @return  the bucket
+     */
+    private Bucket page ( int id )
+    {
+        Bucket b = pool.get ( id );
+        if ( b == null )
+        {
+            b = readPage ( id );
+            cache ( b );
+        }
+        return b;
+    } // page
+
+    /********************************************************************************
+     * Create an empty bucket in a freed page or a new page at the end of the file.
+     * @return  the new bucket
+     */
+    private Bucket allocate ()
+    {
+        int    id = free.isEmpty () ? nPages++ : free.remove ( free.size () - 1 );
+        Bucket b  = new Bucket ( id, SLOTS );
+        touch ( b );
+        return b;
+    } // allocate
+
+    /********************************************************************************
+     * Mark bucket b as changed, (re)placing it in the cache, which matters if it was
+     * evicted while still in use.
+     * @param b  the changed bucket
+     */
+    private void touch ( Bucket b )
+    {
+        b.dirty = true;
+        cache ( b );
+    } // touch
+
+    /********************************************************************************
+     * Put bucket b in the cache as its most recently used page, evicting (and writing
+     * back, if changed) the least recently used pages beyond the limit.
+     * @param b  the bucket
+     */
+    private void cache ( Bucket b )
+    {
+        pool.put ( b.id, b );
+        if ( pool.size () > poolPages )
+        {
+            Iterator <Bucket> it = pool.values ().iterator ();
+            while ( pool.size () > poolPages )
+            {
+                Bucket victim = it.next ();
+                if ( victim.dirty )
+                {
+                    try
+                    {
+                        writePage ( victim );
+                    }
+                    catch ( IOException ex )
+                    {
+                        throw new UncheckedIOException ( "DiskLinHashMap: writing page " + victim.id, ex );
+                    }
+                }
+                it.remove ();
+            }
+        }
+    } // cache
+
+    /********************************************************************************
+     * Read and decode the bucket stored in the given page.
+     * @param id  the page number
+     * @return  the bucket
+     */
+    private Bucket readPage ( int id )
+    {
+        byte [] p = new byte[ pageSize ];
+        try
+        {
+            file.seek ( ( long ) id * pageSize );
+            file.readFully ( p );
+        }
+        catch ( IOException ex )
+        {
+            throw new UncheckedIOException ( "DiskLinHashMap: reading page " + id, ex );
+        }
+        reads++;
+
+        ByteBuffer buf = ByteBuffer.wrap ( p );
+        Bucket     b   = new Bucket ( id, SLOTS );
+        b.nKeys = buf.getShort () & 0xffff;
+        b.next  = buf.getInt ();
+
+        for ( int j = 0; j < b.nKeys; j++ )
+        {
+            b.key[ j ]   = new byte[ keyCodec.size () ];
+            b.value[ j ] = new byte[ valueCodec.size () ];
+            buf.get ( b.key[ j ] ).get ( b.value[ j ] );
+        }
+        return b;
+    } // readPage
+
+    /********************************************************************************
+     * Encode bucket b and write it to its page.
+     * @param b  the bucket
+     */
+    private void writePage ( Bucket b ) throws IOException
+    {
+        ByteBuffer buf = ByteBuffer.allocate ( pageSize );
+        buf.putShort ( ( short ) b.nKeys ).putInt ( b.next );
+
+        for ( int j = 0; j < b.nKeys; j++ )
+        {
+            buf.put ( b.key[ j ] ).put ( b.value[ j ] );
+        }
+        file.seek ( ( long ) b.id * pageSize );
+        file.write ( buf.array () );
+        b.dirty = false;
+        writes++;
+    } // writePage
+
+    /********************************************************************************
+     * Write the directory file: sizes, moduli, split pointer, counts, the page of
+     * each home bucket and the free pages.
+     */
+    private void writeDirectory () throws IOException
+    {
+        try ( DataOutputStream o = new DataOutputStream ( new BufferedOutputStream ( new FileOutputStream ( dirPath ) ) ) )
+        {
+            o.writeInt ( MAGIC );
+            o.writeInt ( pageSize );
+            o.writeInt ( keyCodec.size () );
+            o.writeInt ( valueCodec.size () );
+            o.writeInt ( mod1 );
+            o.writeInt ( split );
+            o.writeInt ( keyCount );
+            o.writeInt ( nPages );
+            for ( int i = 0; i < mod1 + split; i++ )
+            {
+                o.writeInt ( dir[ i ] );
+            }
+            o.writeInt ( free.size () );
+            for ( int id : free )
+            {
+                o.writeInt ( id );
+            }
+        }
+    } // writeDirectory
+
+    /********************************************************************************
+     * The main method used for testing.  It fills a map with more pages than the
+     * cache holds, reopens the files and looks up every key.
+     * @param  the command-line arguments (args [0] gives number of keys to insert)
+     */
+    public static void main ( String [] args ) throws IOException
+    {
+        int totalKeys = 100000;
+
+        if ( args.length == 1 )
+        {
+            totalKeys = Integer.valueOf ( args [0] );
+        }
+
+        File f = File.createTempFile ( "linhash", ".lhx" );
+        f.deleteOnExit ();
+        new File ( f.getPath () + DIR_EXT ).deleteOnExit ();
+
+        DiskLinHashMap <Integer, Long> map = new DiskLinHashMap <> ( f, Codec.INTEGER, Codec.LONG, 1024, 16, 0.75 );
+        for ( int i = 0; i < totalKeys; i++ )
+        {
+            map.put ( i, ( long ) i * i );
+        }
+        int size = map.size ();
+        map.close ();
+
+        map = new DiskLinHashMap <> ( f, Codec.INTEGER, Codec.LONG, 1024, 16, 0.75 );
+        int bad = 0;
+        for ( int i = 0; i < totalKeys; i++ )
+        {
+            Long v = map.get ( i );
+            if ( v == null || v != ( long ) i * i ) bad++;
+        }
+        out.println ( "-------------------------------------------" );
+        out.println ( "size = " + size + ", reopened size = " + map.size () + ", bad lookups = " + bad );
+        out.println ( "home buckets = " + ( map.mod1 + map.split ) + ", pages = " + map.nPages
+                    + ", page reads per lookup = " + map.reads / ( double ) totalKeys );
+        map.close ();
+    } // main
+
+} // DiskLinHashMap class
@@ -0,0 +1,423 @@
+/****************************************************************************************
+ * @file  Expression.java
+ */
+
+import java.util.*;
+import java.util.function.*;
+
+/****************************************************************************************
+ * This class provides typed expressions for selection conditions: column references,
+ * literals, comparisons (=, <>, <, <=, >, >=), BETWEEN, AND and OR.  Unlike an opaque
+ * Predicate, an expression can be inspected, so Table.select can answer equality and
+ * range terms on indexed columns from the index.  Binding an expression to a table
+ * resolves its column names to positions once, rather than once per tuple.
+ *
+ * #usage movie.select ( Expression.and ( Expression.eq ( Expression.col ( "studioName" ), Expression.lit ( "Fox" ) ),
+ *                                        Expression.lt ( Expression.col ( "year" ), Expression.lit ( 1980 ) ) ) )
+ */
+public abstract class Expression
+{
+    /** The comparison operators. */
+    public enum Op { EQ, NE, LT, LE, GT, GE }
+
+    //----------------------------------------------------------------------------------
+    // Factory Methods
+    //----------------------------------------------------------------------------------
+
+    /** Reference the attribute with the given name. */
+    public static Expression col ( String attr )                        { return new Col ( attr ); }
+
+    /** A constant value. */
+    public static Expression lit ( Comparable value )                   { return new Lit ( value ); }
+
+    /** e1 = e2 */
+    public static Expression eq ( Expression e1, Expression e2 )        { return new Compare ( Op.EQ, e1, e2 ); }
+
+    /** e1 <> e2 */
+    public static Expression ne ( Expression e1, Expression e2 )        { return new Compare ( Op.NE, e1, e2 ); }
+
+    /** e1 < e2 */
+    public static Expression lt ( Expression e1, Expression e2 )        { return new Compare ( Op.LT, e1, e2 ); }
+
+    /** e1 <= e2 */
+    public static Expression le ( Expression e1, Expression e2 )        { return new Compare ( Op.LE, e1, e2 ); }
+
+    /** e1 > e2 */
+    public static Expression gt ( Expression e1, Expression e2 )        { return new Compare ( Op.GT, e1, e2 ); }
+
+    /** e1 >= e2 */
+    public static Expression ge ( Expression e1, Expression e2 )        { return new Compare ( Op.GE, e1, e2 ); }
+
+    /** low <= e <= high */
+    public static Expression between ( Expression e, Expression low, Expression high )
+    {
+        return new And ( ge ( e, low ), le ( e, high ) );
+    }
+
+    /** all of the terms hold */
+    public static Expression and ( Expression ... terms )               { return new And ( terms ); }
+
+    /** at least one of the terms holds */
+    public static Expression or ( Expression ... terms )                { return new Or ( terms ); }
+
+    //----------------------------------------------------------------------------------
+    // Binding and Analysis
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Bind this (Boolean) expression to a table, resolving its column references.
+     *
+     * @param table  the table whose tuples the expression will be tested on
+     * @return  a predicate testing the expression on a tuple of the table
+     */
+    public Predicate <Comparable []> bind ( Table table )
+    {
+        throw new IllegalArgumentException ( "Expression.bind: " + this + " is not a condition" );
+    }
+
+    /************************************************************************************
+     * Bind this (value) expression to a table, resolving its column references.
+     *
+     * @param table  the table whose tuples the expression will be evaluated on
+     * @return  a function computing the expression's value for a tuple of the table
+     */
+    Function <Comparable [], Comparable> bindValue ( Table table )
+    {
+        throw new IllegalArgumentException ( "Expression.bindValue: " + this + " is not a value" );
+    }
+
+    /************************************************************************************
+     * Return the range of values for the given attribute that this condition implies,
+     * i.e., every tuple satisfying the condition has its value within the range.
+     *
+     * @param attr  the attribute name
+     * @return  the implied range, or null if the condition does not restrict attr
+     */
+    public Range range ( String attr )
+    {
+        return null;
+    }
+
+    //----------------------------------------------------------------------------------
+    // Ranges
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * A range of values with optional (null means unbounded) inclusive or exclusive ends.
+     */
+    public static class Range
+    {
+        public final Comparable low;
+        public final boolean    lowInclusive;
+        public final Comparable high;
+        public final boolean    highInclusive;
+
+        public Range ( Comparable _low, boolean _lowInclusive, Comparable _high, boolean _highInclusive )
+        {
+            low           = _low;
+            lowInclusive  = _lowInclusive;
+            high          = _high;
+            highInclusive = _highInclusive;
+        }
+
+        /** Whether the range holds a single value (low = high). */
+        @SuppressWarnings ( "unchecked" )
+        public boolean isPoint ()
+        {
+            return low != null && high != null && lowInclusive && highInclusive && low.compareTo ( high ) == 0;
+        }
+
+        /** Whether the range holds no values (low > high, or low = high with an end excluded). */
+        @SuppressWarnings ( "unchecked" )
+        public boolean isEmpty ()
+        {
+            if ( low == null || high == null )
+            {
+                return false;
+            }
+            int cmp = low.compareTo ( high );
+            return cmp > 0 || cmp == 0 && ! ( lowInclusive && highInclusive );
+        }
+
+        /** Whether the (non-null) value v lies in the range. */
+        @SuppressWarnings ( "unchecked" )
+        public boolean contains ( Comparable v )
+        {
+            if ( v == null )
+            {
+                return false;
+            }
+            if ( low != null )
+            {
+                int cmp = v.compareTo ( low );
+                if ( cmp < 0 || cmp == 0 && ! lowInclusive )
+                {
+                    return false;
+                }
+            }
+            if ( high != null )
+            {
+                int cmp = v.compareTo ( high );
+                if ( cmp > 0 || cmp == 0 && ! highInclusive )
+                {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /** The intersection of this range with r. */
+        @SuppressWarnings ( "unchecked" )
+        Range intersect ( Range r )
+        {
+            if ( r == null )
+            {
+                return this;
+            }
+
+            Comparable lo = low,  hi = high;
+            boolean    li = lowInclusive, hiIn = highInclusive;
+
+            if ( lo == null || ( r.low != null && ( r.low.compareTo ( lo ) > 0 ||
+                                                   r.low.compareTo ( lo ) == 0 && ! r.lowInclusive ) ) )
+            {
+                lo = r.low;
+                li = r.lowInclusive;
+            }
+            if ( hi == null || ( r.high != null && ( r.high.compareTo ( hi ) < 0 ||
+                                                    r.high.compareTo ( hi ) == 0 && ! r.highInclusive ) ) )
+            {
+                hi   = r.high;
+                hiIn = r.highInclusive;
+            }
+            return new Range ( lo, li, hi, hiIn );
+        }
+
+        public String toString ()
+        {
+            return ( lowInclusive ? "[" : "(" ) + low + ", " + high + ( highInclusive ? "]" : ")" );
+        }
+    } // Range
+
+    //----------------------------------------------------------------------------------
+    // Expression Nodes
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * A column reference.
+     */
+    private static class Col extends Expression
+    {
+        private final String attr;
+
+        Col ( String _attr )                { attr = _attr; }
+
+        Function <Comparable [], Comparable> bindValue ( Table table )
+        {
+            int c = table.col ( attr );
+
+            if ( c < 0 )
+            {
+                throw new IllegalArgumentException ( "Expression.bind: cannot find the attribute " + attr );
+            }
+            return t -> t[ c ];
+        }
+
+        public String toString ()           { return attr; }
+    } // Col
+
+    /************************************************************************************
+     * A literal (constant) value.
+     */
+    private static class Lit extends Expression
+    {
+        private final Comparable value;
+
+        Lit ( Comparable _value )           { value = _value; }
+
+        Function <Comparable [], Comparable> bindValue ( Table table )
+        {
+            return t -> value;
+        }
+
+        public String toString ()           { return ( value instanceof String ) ? "'" + value + "'" : "" + value; }
+    } // Lit
+
+    /************************************************************************************
+     * A comparison between two values.  A null value never compares true.
+     */
+    private static class Compare extends Expression
+    {
+        private final Op         op;
+        private final Expression e1;
+        private final Expression e2;
+
+        Compare ( Op _op, Expression _e1, Expression _e2 )
+        {
+            op = _op;
+            e1 = _e1;
+            e2 = _e2;
+        }
+
+        @SuppressWarnings ( "unchecked" )
+        public Predicate <Comparable []> bind ( Table table )
+        {
+            Function <Comparable [], Comparable> v1 = e1.bindValue ( table );
+            Function <Comparable [], Comparable> v2 = e2.bindValue ( table );
+
+            return t ->
+            {
+                Comparable a = v1.apply ( t ), b = v2.apply ( t );
+
+                if ( a == null || b == null )
+                {
+                    return false;
+                }
+
+                int cmp = a.compareTo ( b );
+
+                switch ( op )
+                {
+                    case EQ: return cmp == 0;
+                    case NE: return cmp != 0;
+                    case LT: return cmp <  0;
+                    case LE: return cmp <= 0;
+                    case GT: return cmp >  0;
+                    default: return cmp >= 0;
+                }
+            };
+        }
+
+        public Range range ( String attr )
+        {
+            Op         o;
+            Comparable v;
+
+            if ( e1 instanceof Col && ( ( Col ) e1 ).attr.equals ( attr ) && e2 instanceof Lit )
+            {
+                o = op;
+                v = ( ( Lit ) e2 ).value;
+            }
+            else if ( e2 instanceof Col && ( ( Col ) e2 ).attr.equals ( attr ) && e1 instanceof Lit )
+            {
+                o = flip ( op );
+                v = ( ( Lit ) e1 ).value;
+            }
+            else
+            {
+                return null;
+            }
+
+            if ( v == null )
+            {
+                return null;
+            }
+
+            switch ( o )
+            {
+                case EQ: return new Range ( v,    true,  v,    true  );
+                case LT: return new Range ( null, false, v,    false );
+                case LE: return new Range ( null, false, v,    true  );
+                case GT: return new Range ( v,    false, null, false );
+                case GE: return new Range ( v,    true,  null, false );
+                default: return null;
+            }
+        }
+
+        /** The operator for the comparison with its operands swapped. */
+        private static Op flip ( Op o )
+        {
+            switch ( o )
+            {
+                case LT: return Op.GT;
+                case LE: return Op.GE;
+                case GT: return Op.LT;
+                case GE: return Op.LE;
+                default: return o;
+            }
+        }
+
+        public String toString ()
+        {
+            String [] sym = { "=", "<>", "<", "<=", ">", ">=" };
+            return e1 + " " + sym[ op.ordinal () ] + " " + e2;
+        }
+    } // Compare
+
+    /************************************************************************************
+     * A conjunction of conditions.
+     */
+    private static class And extends Expression
+    {
+        private final Expression [] terms;
+
+        And ( Expression ... _terms )       { terms = _terms; }
+
+        public Predicate <Comparable []> bind ( Table table )
+        {
+            Predicate <Comparable []> p = t -> true;
+
+            for ( Expression e : terms )
+            {
+                p = p.and ( e.bind ( table ) );
+            }
+            return p;
+        }
+
+        public Range range ( String attr )
+        {
+            Range r = null;
+
+            for ( Expression e : terms )
+            {
+                Range s = e.range ( attr );
+
+                if ( s != null )
+                {
+                    r = s.intersect ( r );
+                }
+            }
+            return r;
+        }
+
+        public String toString ()           { return join ( " AND ", terms ); }
+    } // And
+
+    /************************************************************************************
+     * A disjunction of conditions.
+     */
+    private static class Or extends Expression
+    {
+        private final Expression [] terms;
+
+        Or ( Expression ... _terms )        { terms = _terms; }
+
+        public Predicate <Comparable []> bind ( Table table )
+        {
+            Predicate <Comparable []> p = t -> false;
+
+            for ( Expression e : terms )
+            {
+                p = p.or ( e.bind ( table ) );
+            }
+            return p;
+        }
+
+        public String toString ()           { return join ( " OR ", terms ); }
+    } // Or
+
+    /************************************************************************************
+     * Join the string forms of the terms, parenthesized, with the given separator.
+     */
+    private static String join ( String sep, Expression [] terms )
+    {
+        StringJoiner sj = new StringJoiner ( sep, "( ", " )" );
+
+        for ( Expression e : terms )
+        {
+            sj.add ( e.toString () );
+        }
+        return sj.toString ();
+    } // join
+
+} // Expression class
@@ -26,9 +26,13 @@ public class FileList
      */
     private RandomAccessFile file;
 
-    /** The name of table.
+    /** The file the tuples are stored in.
      */
-    private final String tableName;
+    private final File path;
+
+    /** The table whose tuples are stored (used to pack/unpack them).
+     */
+    private final Table table;
 
     /** The number bytes required to store a "packed tuple"/record.
      */
@@ -39,26 +43,65 @@ public class FileList
     private int nRecords = 0;
 
     /***************************************************************************
-     * Construct a FileList.
-     * @param _tableName   the name of the table
-     * @param _recordSize  the size of tuple in bytes.
+     * Construct a FileList for the given table, stored in the table's data file.
+     * Any records already in the file are kept.
+     * @param _table  the table whose tuples are to be stored
      */
-    public FileList( String _tableName, int _recordSize )
+    public FileList( Table _table )
     {
-        tableName  = _tableName;
-        recordSize = _recordSize;
+        table      = _table;
+        path       = new File( _table.getName() + EXT );
+        recordSize = table.recordSize();
 
         try
         {
-            file = new RandomAccessFile( tableName + EXT, "rw" );
+            file     = new RandomAccessFile( path, "rw" );
+            nRecords = ( int ) ( file.length() / recordSize );
         }
-        catch( FileNotFoundException ex )
+        catch( IOException ex )
         {
             file = null;
             out.println ( "FileList.constructor: unable to open - " + ex );
         }
     }
 
+    /***************************************************************************
+     * Construct a FileList for the given table, stored in the given file.
+     * Any records already in the file are kept.
+     * @param _table  the table whose tuples are to be stored
+     * @param _path   the file to store them in
+     * @throws IOException  if the file cannot be opened
+     */
+    private FileList( Table _table, File _path ) throws IOException
+    {
+        table      = _table;
+        path       = _path;
+        recordSize = table.recordSize();
+        file       = new RandomAccessFile( path, "rw" );
+        nRecords   = ( int ) ( file.length() / recordSize );
+    }
+
+    /***************************************************************************
+     * Create an empty FileList in a new temporary file (e.g., for spilling the
+     * partitions of a join).  The file should be removed with delete when done.
+     * @param table  the table whose tuples are to be stored
+     * @return  the temporary file list, or null if no file could be created
+     */
+    public static FileList temp( Table table )
+    {
+        try
+        {
+            File f = File.createTempFile( table.getName() + "_part_", EXT );
+            f.deleteOnExit();
+            return new FileList( table, f );
+        }
+        catch( IOException ex )
+        {
+            out.println ( "FileList.temp: unable to create - " + ex );
+            return null;
+        }
+    }
+
     /***************************************************************************
      * Add a new tuple into the file list by packing it into a record and writing
      * this record to the random access file.  Write the record either at the
@@ -66,19 +109,27 @@ public class FileList
      * @param tuple  the tuple to add
      * @return  whether the addition succeeded
      */
-    public boolean add( Comparable [] tuple )
+    public synchronized boolean add( Comparable [] tuple )
     {
-        byte [] record = null;  // FIX: table.pack (tuple);
+        byte [] record = table.pack( tuple );
 
-        if( record.length != recordSize )
+        if( record == null || record.length != recordSize )
         {
-            out.println ( "FileList.add: wrong record size " + record.length );
+            out.println ( "FileList.add: wrong record size " + ( record == null ? 0 : record.length ) );
             return false;
         } // if
 
-        //-----------------\\
-        // TO BE IMPLEMENTED \\
-        //---------------------\\
+        try
+        {
+            file.seek( ( long ) nRecords * recordSize );
+            file.write( record );
+            nRecords++;
+        }
+        catch( IOException ex )
+        {
+            out.println ( "FileList.add: unable to write - " + ex );
+            return false;
+        }
 
         return true;
     } // add
@@ -89,15 +140,27 @@ public class FileList
      * @param i  the index of the tuple to get
      * @return  the ith tuple
      */
-    public Comparable [] get ( int i )
+    public synchronized Comparable [] get ( int i )
     {
+        if( i < 0 || i >= nRecords )
+        {
+            throw new IndexOutOfBoundsException( "FileList.get: " + i + " not in [0, " + nRecords + ")" );
+        }
+
         byte [] record = new byte [recordSize];
 
-        //-----------------\\
-        // TO BE IMPLEMENTED \\
-        //---------------------\\
+        try
+        {
+            file.seek( ( long ) i * recordSize );
+            file.readFully( record );
+        }
+        catch( IOException ex )
+        {
+            out.println ( "FileList.get: unable to read - " + ex );
+            return null;
+        }
 
-        return null;   // FIX: table.unpack (record);
+        return table.unpack( record );
     }
 
     /***************************************************************************
@@ -120,4 +183,16 @@ public class FileList
             out.println( "FileList.close: unable to close - " + ex );
         }
     }
+
+    /***************************************************************************
+     * Close the file and remove it from the file system.
+     */
+    public void delete ()
+    {
+        close ();
+        if( ! path.delete () )
+        {
+            out.println( "FileList.delete: unable to delete " + path );
+        }
+    }
 }
@@ -0,0 +1,139 @@
+/************************************************************************************
+    @file IntBpTreeMap.java
+*/
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+    The IntBpTreeMap class provides B+Tree maps specialized for int keys.  Nodes keep
+    their keys in int arrays and compare them with primitive comparisons, so looking
+    up, inserting or removing a key neither boxes it nor calls compareTo.  The tree
+    itself is shared with LongBpTreeMap (see PrimitiveBpTreeMap).  Lookups may
+    pass any long; keys out of int range are never present.
+*/
+public class IntBpTreeMap <V>
+    extends PrimitiveBpTreeMap <Integer, V>
+{
+    /********************************************************************************
+        This nested class defines nodes with int keys.
+    */
+    private static class IntNode
+        extends Node <Integer>
+    {
+        int [] key;
+
+        /****************************************************************************
+            Construct a node.
+            @param p       the order of the node (max refs)
+            @param isLeaf  whether the node is a leaf
+        */
+        IntNode( int p, boolean _isLeaf )
+        {
+            super( p, _isLeaf );
+            key = new int[ p - 1 ];
+        }
+
+        int find( long k )
+        {
+            int lo = 0, hi = nKeys;
+            while( lo < hi )
+            {
+                int mid = ( lo + hi ) >>> 1;
+                if( k <= key[ mid ] )
+                {
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        long key( int i )                          { return key[ i ]; }
+
+        Integer boxedKey( int i )                  { return key[ i ]; }
+
+        void setKey( int i, long k )               { key[ i ] = ( int ) k; }
+
+        void moveKeys( int from, int to, int len ) { System.arraycopy( key, from, key, to, len ); }
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the default order.
+    */
+    public IntBpTreeMap()
+    {
+        this( BpTreeMap.DEFAULT_ORDER );
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the given order.
+        @param order  the maximum fanout (number of children) of a node (at least 3)
+    */
+    public IntBpTreeMap( int order )
+    {
+        super( order );
+    }
+
+    Node <Integer> newNode( boolean isLeaf )
+    {
+        return new IntNode( ORDER, isLeaf );
+    }
+
+    /********************************************************************************
+        Check that the key is in int range.
+        @param key  the key to check
+        @throws IllegalArgumentException if it is not
+    */
+    void checkKey( long key )
+    {
+        if( key != ( int ) key )
+        {
+            throw new IllegalArgumentException( "IntBpTreeMap.put: " + key + " is out of int range" );
+        }
+    }
+
+    /********************************************************************************
+        The main method used for testing.
+        @param  the command-line arguments (args[ 0 ] gives number of keys to insert)
+    */
+    public static void main( String [] args )
+    {
+        int totalKeys = ( args.length >= 1 ) ? Integer.valueOf( args[ 0 ] ) : 1000000;
+
+        int [] keys = new Random( 0 ).ints( totalKeys ).toArray();
+
+        IntBpTreeMap <Integer>       ipt = new IntBpTreeMap <> ();
+        BpTreeMap <Integer, Integer> bpt = new BpTreeMap <> ( Integer.class, Integer.class );
+
+        for( int k : keys )
+        {
+            ipt.put( k, k );
+            bpt.put( k, k );
+        }
+
+        for( int round = 0; round < 3; round++ )
+        {
+            long t0 = System.nanoTime();
+            long s0 = 0;
+            for( int k : keys )
+            {
+                s0 += ipt.get( k );
+            }
+            long t1 = System.nanoTime();
+            long s1 = 0;
+            for( int k : keys )
+            {
+                s1 += bpt.get( k );
+            }
+            long t2 = System.nanoTime();
+            out.println( "lookups: IntBpTreeMap " + ( t1 - t0 ) / 1000000 + " ms, BpTreeMap "
+                       + ( t2 - t1 ) / 1000000 + " ms (sums agree: " + ( s0 == s1 ) + ")" );
+        }
+    }
+
+}
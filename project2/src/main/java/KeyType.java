@@ -44,8 +44,18 @@ public class KeyType implements Comparable <KeyType>, Serializable
         }
     }
 
+    /*************************************************************************************
+     * Return the attribute values making up the key.
+     * @return  the key values
+     */
+    public Comparable [] getKey ()
+    {
+        return key;
+    }
+
     /*************************************************************************************
      * Compare two keys (negative => less than, zero => equals, positive => greater than ).
+     * Null attribute values (e.g., in projected tuples used as keys) come first.
      * @param k  the other key (to compare with this )
      * @return  resultant integer that's negative, zero or positive
      */
@@ -54,6 +64,14 @@ public class KeyType implements Comparable <KeyType>, Serializable
     {
         for ( int i = 0; i < key.length; i++ )
         {
+            if ( key[ i ] == null || k.key[ i ] == null )
+            {
+                if ( key[ i ] != k.key[ i ] )
+                {
+                    return ( key[ i ] == null ) ? -1 : 1;
+                }
+                continue;
+            }
             if ( key[ i ].compareTo ( k.key[ i ] ) < 0 )
             {
                 return -1;
@@ -85,7 +103,7 @@ public class KeyType implements Comparable <KeyType>, Serializable
         int sum = 0;
         for ( int i = 0; i < key.length; i++ )
         {
-            sum = 7 * sum + key[ i ].hashCode();
+            sum = 7 * sum + ( ( key[ i ] == null ) ? 0 : key[ i ].hashCode() );
         }
         return sum;
     }
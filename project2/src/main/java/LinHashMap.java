@@ -12,14 +12,37 @@ import java.util.*;
 
 /************************************************************************************
  * This class provides hash maps that use the Linear Hashing algorithm.
- * A hash table is created that is an array of buckets.
+ * A hash table is created that is an array of buckets.  Each home bucket heads a
+ * chain of overflow buckets.  Whenever an insert pushes the load (keys per slot in
+ * the home buckets) over the load factor, the single bucket at the split pointer is
+ * split: its chain is rehashed with the high resolution hash function h2 between
+ * itself and a new bucket at the end of the table.  Once every bucket of a round has
+ * been split, the moduli double and the split pointer starts over.  The table so
+ * grows one bucket at a time, never pausing to rehash everything.
  */
 public class LinHashMap <K, V> extends AbstractMap <K, V>
     implements Serializable, Cloneable, Map <K, V>
 {
+    /** The default number of slots (for key-value pairs) per bucket.
+     */
+    public static final int DEFAULT_SLOTS = 4;
+
+    /** The default load factor (fraction of the home buckets' slots in use) above
+     *  which a bucket is split.
+     */
+    public static final double DEFAULT_LOAD_FACTOR = 0.75;
+
     /** The number of slots (for key-value pairs) per bucket.
      */
-    private static final int SLOTS = 4;
+    private final int SLOTS;
+
+    /** The load factor above which a bucket is split.
+     */
+    private final double loadFactor;
+
+    /** The initial number of home buckets.
+     */
+    private final int initSize;
 
     /** The class for type K.
      */
@@ -32,7 +55,7 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
     /********************************************************************************
      * This inner class defines buckets that are stored in the hash table.
      */
-    private class Bucket
+    private class Bucket implements Serializable
     {
         int    nKeys;
         K []   key;
@@ -69,19 +92,43 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
      */
     private int split = 0;
 
+    /** The number of key-value pairs stored in the hash table.
+     */
+    private int keyCount = 0;
+
     /********************************************************************************
-     * Construct a hash table that uses Linear Hashing.
+     * Construct a hash table that uses Linear Hashing, with 4 initial home buckets,
+     * DEFAULT_SLOTS slots per bucket and the DEFAULT_LOAD_FACTOR.
      * @param classK    the class for keys (K)
      * @param classV    the class for keys (V)
-     * @param initSize  the initial number of home buckets (a power of 2, e.g., 4)
      */
-    public LinHashMap ( Class <K> _classK, Class <V> _classV )  // , int initSize)
+    public LinHashMap ( Class <K> _classK, Class <V> _classV )
     {
-        classK = _classK;
-        classV = _classV;
-        hTable = new ArrayList <> ();
-        mod1   = 4;                        
-        mod2   = 2 * mod1;
+        this ( _classK, _classV, 4, DEFAULT_SLOTS, DEFAULT_LOAD_FACTOR );
+    }
+
+    /********************************************************************************
+     * Construct a hash table that uses Linear Hashing.
+     * @param classK      the class for keys (K)
+     * @param classV      the class for keys (V)
+     * @param _initSize   the initial number of home buckets (e.g., 4)
+     * @param slots       the number of slots per bucket
+     * @param loadFactor  the load (keys per home bucket slot) above which to split
+     */
+    public LinHashMap ( Class <K> _classK, Class <V> _classV, int _initSize, int slots, double _loadFactor )
+    {
+        if ( _initSize < 1 || slots < 1 || ! ( _loadFactor > 0.0 ) )
+        {
+            throw new IllegalArgumentException ( "LinHashMap: bad initSize " + _initSize + ", slots " + slots
+                                               + " or loadFactor " + _loadFactor );
+        }
+        classK     = _classK;
+        classV     = _classV;
+        SLOTS      = slots;
+        loadFactor = _loadFactor;
+        initSize   = _initSize;
+        hTable     = new ArrayList <> ();
+        clear ();
     }
 
     /********************************************************************************
@@ -92,11 +139,14 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
     {
         Set <Map.Entry <K, V>> enSet = new HashSet <> ();
 
-        for( int i = 0; i < size(); i++ )
+        for( int i = 0; i < hTable.size(); i++ )
         {
             for( Bucket b = hTable.get( i ); b != null; b = b.next )
             {
-                enSet.add( new AbstractMap.SimpleEntry <K, V> ( b.key[ i ], b.value[ i ] ) );
+                for( int j = 0; j < b.nKeys; j++ )
+                {
+                    enSet.add( new AbstractMap.SimpleEntry <K, V> ( b.key[ j ], b.value[ j ] ) );
+                }
             }
         }
 
@@ -110,16 +160,17 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
      */
     public V get ( Object key )
     {
-        int i = h ( key );
-
-        Bucket b = hTable.get( i );
+        int i = address ( key );
 
-        for( int j = 0; j < b.nKeys; j++ )
+        for( Bucket b = hTable.get( i ); b != null; b = b.next )
         {
-            if( b.key[ j ].equals( key ) )
+            count++;
+            for( int j = 0; j < b.nKeys; j++ )
             {
-                count++;
-                return b.value[ j ];
+                if( b.key[ j ].equals( key ) )
+                {
+                    return b.value[ j ];
+                }
             }
         }
 
@@ -127,26 +178,177 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
     } // get
 
     /********************************************************************************
-     * Put the key-value pair in the hash table.
+     * Determine whether the hash table holds the given key.
+     * @param key  the key to look for
+     * @return  whether the key is present
+     */
+    public boolean containsKey ( Object key )
+    {
+        return get ( key ) != null;
+    } // containsKey
+
+    /********************************************************************************
+     * Put the key-value pair in the hash table.  The pair goes in the first bucket of
+     * its chain with a free slot, adding an overflow bucket to the chain if all are full.
+     * If the new pair pushes the load over the load factor, one bucket is split.
      * @param key    the key to insert
      * @param value  the value to insert
-     * @return  null (not the previous value)
+     * @return  the previous value for the key, or null if there was none
      */
     public V put ( K key, V value )
     {
-        int i = h ( key );
-        out.println ( "LinearHashMap.put: key = " + key + ", h() = " + i + ", value = " + value );
+        int i = address ( key );
 
+        Bucket free = null, last = null;
+
+        for( Bucket b = hTable.get( i ); b != null; b = b.next )
+        {
+            for( int j = 0; j < b.nKeys; j++ )
+            {
+                if( b.key[ j ].equals( key ) )
+                {
+                    V old = b.value[ j ];
+                    b.value[ j ] = value;
+                    return old;
+                }
+            }
+            if( free == null && b.nKeys < SLOTS )
+            {
+                free = b;
+            }
+            last = b;
+        }
+
+        if( free == null )
+        {
+            free = last.next = new Bucket ( null );
+        }
+
+        free.key[ free.nKeys ]   = key;
+        free.value[ free.nKeys ] = value;
+        free.nKeys++;
+        keyCount++;
+
+        if ( keyCount > loadFactor * SLOTS * hTable.size () )
+        {
+            split ();
+        }
         return null;
     }
 
     /********************************************************************************
-     * Return the size (SLOTS * number of home buckets) of the hash table.
+     * Split the bucket at the split pointer: rehash the pairs in its chain using h2,
+     * leaving each either there or in a new bucket (split + mod1) added at the end
+     * of the table.  Then advance the split pointer, starting a new round (doubling
+     * the moduli) once all mod1 buckets of this round have been split.
+     */
+    private void split ()
+    {
+        Bucket old = hTable.get ( split );
+
+        hTable.set ( split, new Bucket ( null ) );
+        hTable.add ( new Bucket ( null ) );
+
+        for ( Bucket b = old; b != null; b = b.next )
+        {
+            for ( int j = 0; j < b.nKeys; j++ )
+            {
+                append ( hTable.get ( h2 ( b.key[ j ] ) ), b.key[ j ], b.value[ j ] );
+            }
+        }
+
+        if ( ++split == mod1 )
+        {
+            split = 0;
+            mod1  = mod2;
+            mod2  = 2 * mod1;
+        }
+    } // split
+
+    /********************************************************************************
+     * Add a key-value pair (known not to be present) to the end of a bucket chain.
+     * @param b      the home bucket of the chain
+     * @param key    the key to add
+     * @param value  the value to add
+     */
+    private void append ( Bucket b, K key, V value )
+    {
+        while ( b.nKeys == SLOTS )
+        {
+            if ( b.next == null )
+            {
+                b.next = new Bucket ( null );
+            }
+            b = b.next;
+        }
+        b.key[ b.nKeys ]   = key;
+        b.value[ b.nKeys ] = value;
+        b.nKeys++;
+    } // append
+
+    /********************************************************************************
+     * Remove the key (and its value) from the hash table.  The slot is filled by the
+     * last pair in the same bucket, and an overflow bucket left empty is unlinked
+     * from its chain.
+     * @param key  the key to remove
+     * @return  the value that was associated with the key, or null if there was none
+     */
+    public V remove ( Object key )
+    {
+        int i = address ( key );
+
+        Bucket prev = null;
+
+        for( Bucket b = hTable.get( i ); b != null; prev = b, b = b.next )
+        {
+            count++;
+            for( int j = 0; j < b.nKeys; j++ )
+            {
+                if( b.key[ j ].equals( key ) )
+                {
+                    V old = b.value[ j ];
+                    b.nKeys--;
+                    b.key[ j ]         = b.key[ b.nKeys ];
+                    b.value[ j ]       = b.value[ b.nKeys ];
+                    b.key[ b.nKeys ]   = null;
+                    b.value[ b.nKeys ] = null;
+                    if( b.nKeys == 0 && prev != null )
+                    {
+                        prev.next = b.next;
+                    }
+                    keyCount--;
+                    return old;
+                }
+            }
+        }
+
+        return null;
+    } // remove
+
+    /********************************************************************************
+     * Remove all the key-value pairs, shrinking the table back to its initial size.
+     */
+    public void clear ()
+    {
+        hTable.clear ();
+        mod1     = initSize;
+        mod2     = 2 * mod1;
+        split    = 0;
+        keyCount = 0;
+
+        for ( int i = 0; i < mod1; i++ )
+        {
+            hTable.add ( new Bucket ( null ) );
+        }
+    } // clear
+
+    /********************************************************************************
+     * Return the size (number of key-value pairs) of the hash table.
      * @return  the size of the hash table
      */
     public int size ()
     {
-        return SLOTS * ( mod1 + split );
+        return keyCount;
     } // size
 
     /********************************************************************************
@@ -176,6 +378,30 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
         out.println ( "\n-------------------------------------------" );
     } // print
 
+    /********************************************************************************
+     * Return the home bucket for the key: h addresses the buckets not yet split in
+     * this round, while those before the split pointer (already split) use h2.
+     * @param key  the key to locate
+     * @return  the location of the bucket chain that holds (or would hold) the key
+     */
+    private int address ( Object key )
+    {
+        int i = h ( key );
+        return ( i < split ) ? h2 ( key ) : i;
+    } // address
+
+    /********************************************************************************
+     * Return the key's hash code with its high bits folded into the low ones, since
+     * the hash functions only look at the low bits.
+     * @param key  the key to hash
+     * @return  the spread hash code
+     */
+    private static int hash ( Object key )
+    {
+        int hc = key.hashCode ();
+        return hc ^ ( hc >>> 16 );
+    } // hash
+
     /********************************************************************************
      * Hash the key using the low resolution hash function.
      * @param key  the key to hash
@@ -183,7 +409,7 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
      */
     private int h ( Object key )
     {
-        return key.hashCode () % mod1;
+        return Math.floorMod ( hash ( key ), mod1 );
     } // h
 
     /********************************************************************************
@@ -193,7 +419,7 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
      */
     private int h2 ( Object key )
     {
-        return key.hashCode () % mod2;
+        return Math.floorMod ( hash ( key ), mod2 );
     } // h2
 
     /********************************************************************************
@@ -234,6 +460,7 @@ public class LinHashMap <K, V> extends AbstractMap <K, V>
             out.println ( "key = " + i + " value = " + ht.get ( i ) );
         } // for
         out.println ( "-------------------------------------------" );
+        out.println ( "Home buckets = " + ht.hTable.size () + " (mod1 = " + ht.mod1 + ", split = " + ht.split + ")" );
         out.println ( "Average number of buckets accessed = " + ht.count / ( double ) totalKeys );
     } // main
 
@@ -0,0 +1,133 @@
+/************************************************************************************
+    @file LongBpTreeMap.java
+*/
+
+import java.util.*;
+
+import static java.lang.System.out;
+
+/************************************************************************************
+    The LongBpTreeMap class provides B+Tree maps specialized for long keys.  Nodes keep
+    their keys in long arrays and compare them with primitive comparisons, so looking
+    up, inserting or removing a key neither boxes it nor calls compareTo.  The tree
+    itself is shared with IntBpTreeMap (see PrimitiveBpTreeMap).
+*/
+public class LongBpTreeMap <V>
+    extends PrimitiveBpTreeMap <Long, V>
+{
+    /********************************************************************************
+        This nested class defines nodes with long keys.
+    */
+    private static class LongNode
+        extends Node <Long>
+    {
+        long [] key;
+
+        /****************************************************************************
+            Construct a node.
+            @param p       the order of the node (max refs)
+            @param isLeaf  whether the node is a leaf
+        */
+        LongNode( int p, boolean _isLeaf )
+        {
+            super( p, _isLeaf );
+            key = new long[ p - 1 ];
+        }
+
+        int find( long k )
+        {
+            int lo = 0, hi = nKeys;
+            while( lo < hi )
+            {
+                int mid = ( lo + hi ) >>> 1;
+                if( k <= key[ mid ] )
+                {
+                    hi = mid;
+                }
+                else
+                {
+                    lo = mid + 1;
+                }
+            }
+            return lo;
+        }
+
+        long key( int i )                          { return key[ i ]; }
+
+        Long boxedKey( int i )                     { return key[ i ]; }
+
+        void setKey( int i, long k )               { key[ i ] = k; }
+
+        void moveKeys( int from, int to, int len ) { System.arraycopy( key, from, key, to, len ); }
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the default order.
+    */
+    public LongBpTreeMap()
+    {
+        this( BpTreeMap.DEFAULT_ORDER );
+    }
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the given order.
+        @param order  the maximum fanout (number of children) of a node (at least 3)
+    */
+    public LongBpTreeMap( int order )
+    {
+        super( order );
+    }
+
+    Node <Long> newNode( boolean isLeaf )
+    {
+        return new LongNode( ORDER, isLeaf );
+    }
+
+    /********************************************************************************
+        Every long key fits.
+        @param key  the key to check
+    */
+    void checkKey( long key )
+    {
+    }
+
+    /********************************************************************************
+        The main method used for testing.
+        @param  the command-line arguments (args[ 0 ] gives number of keys to insert)
+    */
+    public static void main( String [] args )
+    {
+        int totalKeys = ( args.length >= 1 ) ? Integer.valueOf( args[ 0 ] ) : 1000000;
+
+        long [] keys = new Random( 0 ).longs( totalKeys ).toArray();
+
+        LongBpTreeMap <Long>   lpt = new LongBpTreeMap <> ();
+        BpTreeMap <Long, Long> bpt = new BpTreeMap <> ( Long.class, Long.class );
+
+        for( long k : keys )
+        {
+            lpt.put( k, k );
+            bpt.put( k, k );
+        }
+
+        for( int round = 0; round < 3; round++ )
+        {
+            long t0 = System.nanoTime();
+            long s0 = 0;
+            for( long k : keys )
+            {
+                s0 += lpt.get( k );
+            }
+            long t1 = System.nanoTime();
+            long s1 = 0;
+            for( long k : keys )
+            {
+                s1 += bpt.get( k );
+            }
+            long t2 = System.nanoTime();
+            out.println( "lookups: LongBpTreeMap " + ( t1 - t0 ) / 1000000 + " ms, BpTreeMap "
+                       + ( t2 - t1 ) / 1000000 + " ms (sums agree: " + ( s0 == s1 ) + ")" );
+        }
+    }
+
+}
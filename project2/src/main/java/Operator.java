@@ -0,0 +1,456 @@
+/****************************************************************************************
+ * @file  Operator.java
+ */
+
+import java.util.*;
+import java.util.function.*;
+
+/****************************************************************************************
+ * This class implements pipelined (Volcano-style) relational algebra operators.  An
+ * operator tree is built by chaining select, project and join starting from one or more
+ * table scans (see Table.scan).  Nothing is evaluated while the tree is being built;
+ * tuples are pulled through the whole tree one at a time by open/next/close, so no
+ * intermediate table is materialized.  The only blocking step is the build side of a
+ * join, which is loaded into a hash table when the join is opened.
+ *
+ * #usage movie.scan ().select ( t -> t[ movie.col ( "year" ) ].equals ( 1977 ) )
+ *                     .project ( "title studioName" ).toTable ( "oldMovies" )
+ */
+public abstract class Operator implements Iterable <Comparable []>
+{
+    /** Array of attribute names of the tuples produced. */
+    protected final String [] attribute;
+
+    /** Array of attribute domains of the tuples produced. */
+    protected final Class [] domain;
+
+    /** Primary key of the tuples produced. */
+    protected final String [] key;
+
+    /************************************************************************************
+     * Construct an operator producing tuples with the given schema.
+     *
+     * @param _attribute  the attribute names
+     * @param _domain     the attribute domains
+     * @param _key        the primary key
+     */
+    protected Operator ( String [] _attribute, Class [] _domain, String [] _key )
+    {
+        attribute = _attribute;
+        domain    = _domain;
+        key       = _key;
+    }
+
+    //----------------------------------------------------------------------------------
+    // Iterator Protocol
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Prepare the operator (and its inputs) to produce tuples from the beginning.
+     */
+    public abstract void open ();
+
+    /************************************************************************************
+     * Produce the next tuple.
+     *
+     * @return  the next tuple, or null once the operator is exhausted
+     */
+    public abstract Comparable [] next ();
+
+    /************************************************************************************
+     * Release whatever the operator (and its inputs) hold on to.
+     */
+    public abstract void close ();
+
+    //----------------------------------------------------------------------------------
+    // Operator Tree Construction
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Select the tuples satisfying the given predicate (Boolean function).
+     *
+     * @param predicate  the check condition for tuples
+     * @return  an operator producing the tuples satisfying the predicate
+     */
+    public Operator select ( Predicate <Comparable []> predicate )
+    {
+        return new Select ( this, predicate );
+    }
+
+    /************************************************************************************
+     * Project the tuples onto a lower dimension by keeping only the given attributes.
+     * Duplicates are not eliminated.
+     *
+     * @param attributes  the attributes to project onto
+     * @return  an operator producing the projected tuples
+     */
+    public Operator project ( String attributes )
+    {
+        return new Project ( this, attributes.split ( " " ) );
+    }
+
+    /************************************************************************************
+     * Join with op2 by performing an "equi-join" requiring attributes1 to equal
+     * attributes2.  Duplicate op2 attribute names get "2" appended to them.
+     *
+     * @param attributes1  the attributes of this operator to be compared
+     * @param attributes2  the attributes of op2 to be compared
+     * @param op2          the rhs operator (the build side)
+     * @return  an operator producing the joined tuples
+     */
+    public Operator join ( String attributes1, String attributes2, Operator op2 )
+    {
+        String [] u_attrs = attributes2.split ( " " );
+        String [] renamed = op2.attribute.clone ();
+
+        for ( int j = 0; j < renamed.length; j++ )
+        {
+            if ( col ( renamed[ j ] ) >= 0 )
+            {
+                renamed[ j ] += "2";
+            }
+        }
+
+        int [] u_keep = new int[ op2.attribute.length ];
+
+        for ( int j = 0; j < u_keep.length; j++ )
+        {
+            u_keep[ j ] = j;
+        }
+
+        return new HashJoin ( this, cols ( attributes1.split ( " " ) ), op2, op2.cols ( u_attrs ), u_keep,
+                              ArrayUtil.concat ( attribute, renamed ) );
+    }
+
+    /************************************************************************************
+     * Join with op2 by performing a "natural join" on the common attributes.  The
+     * duplicate columns from op2 are eliminated.
+     *
+     * @param op2  the rhs operator (the build side)
+     * @return  an operator producing the joined tuples
+     */
+    public Operator join ( Operator op2 )
+    {
+        List <String>  common = new ArrayList <> ();
+        List <Integer> u_keep = new ArrayList <> ();
+
+        for ( int j = 0; j < op2.attribute.length; j++ )
+        {
+            if ( col ( op2.attribute[ j ] ) >= 0 )
+            {
+                common.add ( op2.attribute[ j ] );
+            }
+            else
+            {
+                u_keep.add ( j );
+            }
+        }
+
+        String [] c_attrs = common.toArray ( new String[ 0 ] );
+        String [] kept    = new String[ u_keep.size () ];
+        int    [] u_kept  = new int[ u_keep.size () ];
+
+        for ( int j = 0; j < u_kept.length; j++ )
+        {
+            u_kept[ j ] = u_keep.get ( j );
+            kept[ j ]   = op2.attribute[ u_kept[ j ] ];
+        }
+
+        return new HashJoin ( this, cols ( c_attrs ), op2, op2.cols ( c_attrs ), u_kept,
+                              ArrayUtil.concat ( attribute, kept ) );
+    }
+
+    //----------------------------------------------------------------------------------
+    // Consumers
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Run the operator tree and materialize its tuples into a table.
+     *
+     * @param name  the name of the resulting table
+     * @return  a table holding all the tuples produced
+     */
+    public Table toTable ( String name )
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+
+        for ( Comparable [] t : this )
+        {
+            rows.add ( t );
+        }
+        return new Table ( name, attribute, domain, key, rows );
+    }
+
+    /************************************************************************************
+     * Return a cursor that opens the operator tree, pulls its tuples one at a time and
+     * closes it once they run out.
+     *
+     * @return  an iterator over the tuples produced
+     */
+    public Iterator <Comparable []> iterator ()
+    {
+        open ();
+
+        return new Iterator <Comparable []> ()
+        {
+            private Comparable [] nxt = advance ();
+
+            private Comparable [] advance ()
+            {
+                Comparable [] t = Operator.this.next ();
+                if ( t == null )
+                {
+                    close ();
+                }
+                return t;
+            }
+
+            public boolean hasNext () { return nxt != null; }
+
+            public Comparable [] next ()
+            {
+                if ( nxt == null )
+                {
+                    throw new NoSuchElementException ();
+                }
+                Comparable [] t = nxt;
+                nxt = advance ();
+                return t;
+            }
+        };
+    }
+
+    /************************************************************************************
+     * Return the column position for the given attribute name.
+     *
+     * @param attr  the given attribute name
+     * @return  a column position, or -1 if not found
+     */
+    public int col ( String attr )
+    {
+        for ( int i = 0; i < attribute.length; i++ )
+        {
+            if ( attr.equals ( attribute[ i ] ) )
+            {
+                return i;
+            }
+        }
+        return -1;
+    } // col
+
+    /************************************************************************************
+     * Return the column positions for the given attribute names.
+     *
+     * @param attrs  the given attribute names
+     * @return  the column positions
+     */
+    private int [] cols ( String [] attrs )
+    {
+        int [] colPos = new int[ attrs.length ];
+
+        for ( int j = 0; j < attrs.length; j++ )
+        {
+            if ( ( colPos[ j ] = col ( attrs[ j ] ) ) < 0 )
+            {
+                throw new IllegalArgumentException ( "Operator: cannot find the attribute " + attrs[ j ] );
+            }
+        }
+        return colPos;
+    } // cols
+
+    //----------------------------------------------------------------------------------
+    // Operators
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Leaf operator scanning a list of tuples (typically the tuples of a table).
+     */
+    static class Scan extends Operator
+    {
+        private final List <Comparable []> tuples;
+        private Iterator <Comparable []>   it;
+
+        Scan ( String [] _attribute, Class [] _domain, String [] _key, List <Comparable []> _tuples )
+        {
+            super ( _attribute, _domain, _key );
+            tuples = _tuples;
+        }
+
+        public void open ()             { it = tuples.iterator (); }
+
+        public Comparable [] next ()    { return ( it != null && it.hasNext () ) ? it.next () : null; }
+
+        public void close ()            { it = null; }
+    } // Scan
+
+    /************************************************************************************
+     * Operator passing on the input tuples that satisfy a predicate.
+     */
+    private static class Select extends Operator
+    {
+        private final Operator                  input;
+        private final Predicate <Comparable []> predicate;
+
+        Select ( Operator _input, Predicate <Comparable []> _predicate )
+        {
+            super ( _input.attribute, _input.domain, _input.key );
+            input     = _input;
+            predicate = _predicate;
+        }
+
+        public void open ()             { input.open (); }
+
+        public Comparable [] next ()
+        {
+            for ( Comparable [] t = input.next (); t != null; t = input.next () )
+            {
+                if ( predicate.test ( t ) )
+                {
+                    return t;
+                }
+            }
+            return null;
+        }
+
+        public void close ()            { input.close (); }
+    } // Select
+
+    /************************************************************************************
+     * Operator keeping only some of the columns of the input tuples.  The column
+     * positions are worked out once, when the operator is built.
+     */
+    private static class Project extends Operator
+    {
+        private final Operator input;
+        private final int []   colPos;
+
+        Project ( Operator _input, String [] attrs )
+        {
+            super ( attrs, new Class[ attrs.length ],
+                    Arrays.asList ( attrs ).containsAll ( Arrays.asList ( _input.key ) ) ? _input.key : attrs );
+            input  = _input;
+            colPos = _input.cols ( attrs );
+
+            for ( int j = 0; j < colPos.length; j++ )
+            {
+                domain[ j ] = input.domain[ colPos[ j ] ];
+            }
+        }
+
+        public void open ()             { input.open (); }
+
+        public Comparable [] next ()
+        {
+            Comparable [] t = input.next ();
+
+            if ( t == null )
+            {
+                return null;
+            }
+
+            Comparable [] tup = new Comparable[ colPos.length ];
+
+            for ( int j = 0; j < colPos.length; j++ )
+            {
+                tup[ j ] = t[ colPos[ j ] ];
+            }
+            return tup;
+        }
+
+        public void close ()            { input.close (); }
+    } // Project
+
+    /************************************************************************************
+     * Operator joining its left input with its right input on lCols = rCols.  Opening
+     * it loads the right input into a hash table; the left input is then streamed and
+     * each of its tuples is joined with the right tuples having the same key.
+     */
+    private static class HashJoin extends Operator
+    {
+        private final Operator left;
+        private final Operator right;
+        private final int []   lCols;
+        private final int []   rCols;
+        private final int []   rKeep;
+
+        private Map <KeyType, List <Comparable []>> hTable;
+        private Comparable []                       current;
+        private Iterator <Comparable []>            matches;
+
+        HashJoin ( Operator _left, int [] _lCols, Operator _right, int [] _rCols, int [] _rKeep, String [] attrs )
+        {
+            super ( attrs, new Class[ attrs.length ], _left.key );
+            left  = _left;
+            right = _right;
+            lCols = _lCols;
+            rCols = _rCols;
+            rKeep = _rKeep;
+
+            if ( lCols.length != rCols.length )
+            {
+                throw new IllegalArgumentException ( "Operator.join: attribute lists differ in length" );
+            }
+
+            System.arraycopy ( left.domain, 0, domain, 0, left.domain.length );
+
+            for ( int j = 0; j < rKeep.length; j++ )
+            {
+                domain[ left.domain.length + j ] = right.domain[ rKeep[ j ] ];
+            }
+        }
+
+        public void open ()
+        {
+            hTable = new HashMap <> ();
+
+            right.open ();
+            for ( Comparable [] u = right.next (); u != null; u = right.next () )
+            {
+                KeyType k = Table.keyOf ( u, rCols );
+
+                if ( k != null )
+                {
+                    hTable.computeIfAbsent ( k, x -> new ArrayList <> ( 1 ) ).add ( u );
+                }
+            }
+            right.close ();
+
+            left.open ();
+            current = null;
+            matches = Collections.emptyIterator ();
+        }
+
+        public Comparable [] next ()
+        {
+            while ( ! matches.hasNext () )
+            {
+                if ( ( current = left.next () ) == null )
+                {
+                    return null;
+                }
+
+                KeyType k = Table.keyOf ( current, lCols );
+                List <Comparable []> group = ( k == null ) ? null : hTable.get ( k );
+
+                matches = ( group == null ) ? Collections.emptyIterator () : group.iterator ();
+            }
+
+            Comparable [] u   = matches.next ();
+            Comparable [] tup = Arrays.copyOf ( current, current.length + rKeep.length );
+
+            for ( int j = 0; j < rKeep.length; j++ )
+            {
+                tup[ current.length + j ] = u[ rKeep[ j ] ];
+            }
+            return tup;
+        }
+
+        public void close ()
+        {
+            left.close ();
+            hTable  = null;
+            matches = null;
+        }
+    } // HashJoin
+
+} // Operator class
@@ -0,0 +1,461 @@
+/************************************************************************************
+    @file PrimitiveBpTreeMap.java
+*/
+
+import java.io.*;
+import java.util.*;
+
+import static java.lang.Math.ceil;
+
+/************************************************************************************
+    The PrimitiveBpTreeMap class provides the B+Tree shared by IntBpTreeMap and
+    LongBpTreeMap.  Each subclass supplies nodes that keep their keys in a primitive
+    array (int or long) and search them with primitive comparisons; the tree itself
+    passes keys around as longs, so looking up, inserting or removing a key neither
+    boxes it nor calls compareTo.  As in BpTreeMap, keys are all at the leaf level,
+    leaves are linked, and each divider key is the largest key in its left subtree.
+    Removal does not rebalance: a leaf may be left sparse (or empty) and is skipped
+    over by scans.
+    @param <K>  the boxed key type handed out by rangeIterator (Integer or Long)
+    @param <V>  the type of the values
+*/
+public abstract class PrimitiveBpTreeMap <K extends Number, V>
+    implements Serializable
+{
+    /** The maximum fanout (number of children) for a B+Tree node.
+    */
+    protected final int ORDER;
+
+    /** The ceiling of half the ORDER.
+    */
+    private final int MID;
+
+    /********************************************************************************
+        This nested class defines nodes that are stored in the B+tree map.  Subclasses
+        hold the keys.
+    */
+    static abstract class Node <K>
+    {
+        boolean   isLeaf;
+        int       nKeys;
+        Object [] ref;
+        Node <K>  next;
+
+        /****************************************************************************
+            Construct a node.
+            @param p       the order of the node (max refs)
+            @param isLeaf  whether the node is a leaf
+        */
+        Node( int p, boolean _isLeaf )
+        {
+            isLeaf = _isLeaf;
+            ref    = new Object[ p ];
+        }
+
+        /****************************************************************************
+            Find the "<=" match position in this node, i.e., the first position whose
+            key is >= k, by binary search over the (sorted) keys.
+            @param k  the key to be matched.
+            @return  the position of match within node, where nKeys indicates no match
+        */
+        abstract int find( long k );
+
+        /****************************************************************************
+            Return the key at position i.
+            @param i  the position of the key
+            @return  the key
+        */
+        abstract long key( int i );
+
+        /****************************************************************************
+            Return the key at position i boxed (for the entries of rangeIterator).
+            @param i  the position of the key
+            @return  the boxed key
+        */
+        abstract K boxedKey( int i );
+
+        /****************************************************************************
+            Set the key at position i (already checked to fit, see checkKey).
+            @param i  the position of the key
+            @param k  the new key
+        */
+        abstract void setKey( int i, long k );
+
+        /****************************************************************************
+            Copy len keys within this node from position from to position to.
+            @param from  the position of the first key to move
+            @param to    the position to move it to
+            @param len   the number of keys to move
+        */
+        abstract void moveKeys( int from, int to, int len );
+
+        /****************************************************************************
+            Shift the keys (and refs) from position i right by one, making room at i.
+            @param i     the position to open up
+            @param left  whether the ref to the left of the key moves too (leaf)
+        */
+        void open( int i, boolean left )
+        {
+            int r = left ? i : i + 1;
+            moveKeys( i, i + 1, nKeys - i );
+            System.arraycopy( ref, r, ref, r + 1, nKeys + 1 - r );
+            nKeys++;
+        }
+    }
+
+    /** The root of the B+Tree
+    */
+    private transient Node <K> root;
+
+    /** The first (leftmost) leaf in the B+Tree
+    */
+    private transient Node <K> firstLeaf;
+
+    /** The divider key (largest left) passed up by the last split
+    */
+    private transient long divider;
+
+    /** The counter for the total number of keys in the B+Tree Map
+    */
+    private transient int keyCount = 0;
+
+    /********************************************************************************
+        Construct an empty B+Tree map with the given order.
+        @param order  the maximum fanout (number of children) of a node (at least 3)
+    */
+    protected PrimitiveBpTreeMap( int order )
+    {
+        if( order < 3 )
+        {
+            throw new IllegalArgumentException( getClass().getSimpleName() + ": order must be at least 3, not " + order );
+        }
+        ORDER = order;
+        MID   = ( int ) ceil ( ORDER / 2.0 );
+        clear();
+    }
+
+    /********************************************************************************
+        Make an empty node for this tree.
+        @param isLeaf  whether the node is a leaf
+        @return  the new node
+    */
+    abstract Node <K> newNode( boolean isLeaf );
+
+    /********************************************************************************
+        Check that the key fits in the nodes' key arrays.
+        @param key  the key to check
+        @throws IllegalArgumentException if it does not
+    */
+    abstract void checkKey( long key );
+
+    /********************************************************************************
+        Save the B+Tree map as its number of entries followed by the entries in key
+        order.
+        @param oos  the stream to write to
+    */
+    private void writeObject( ObjectOutputStream oos ) throws IOException
+    {
+        oos.defaultWriteObject();
+        oos.writeInt( keyCount );
+        for( Node <K> n = firstLeaf; n != null; n = n.next )
+        {
+            for( int i = 0; i < n.nKeys; i++ )
+            {
+                oos.writeLong( n.key( i ) );
+                oos.writeObject( n.ref[ i ] );
+            }
+        }
+    }
+
+    /********************************************************************************
+        Restore a B+Tree map saved by writeObject.
+        @param ois  the stream to read from
+    */
+    @SuppressWarnings ( "unchecked" )
+    private void readObject( ObjectInputStream ois ) throws IOException, ClassNotFoundException
+    {
+        ois.defaultReadObject();
+        clear();
+        for( int i = ois.readInt(); i > 0; i-- )
+        {
+            long key = ois.readLong();
+            put( key, ( V ) ois.readObject() );
+        }
+    }
+
+    /********************************************************************************
+        Given the key, look up the value in the B+Tree map.
+        @param key  the key used for look up
+        @return  the value associated with the key or null if not found
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V get( long key )
+    {
+        Node <K> n = leafFor( key );
+        int      i = n.find( key );
+        return( i < n.nKeys && n.key( i ) == key ) ? ( V ) n.ref[ i ] : null;
+    }
+
+    /********************************************************************************
+        Determine whether the B+Tree map holds the given key.
+        @param key  the key to look for
+        @return  whether the key is present
+    */
+    public boolean containsKey( long key )
+    {
+        return get( key ) != null;
+    }
+
+    /********************************************************************************
+        Put the key-value pair in the B+Tree map.
+        @param key    the key to insert
+        @param value  the value to insert (not null)
+        @return  the previous value for this key, or null if there was none
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V put( long key, V value )
+    {
+        if( value == null )
+        {
+            throw new NullPointerException( getClass().getSimpleName() + ".put: null value for key " + key );
+        }
+        checkKey( key );
+
+        Node <K> leaf = leafFor( key );
+        int      i    = leaf.find( key );
+        if( i < leaf.nKeys && leaf.key( i ) == key )
+        {
+            V old = ( V ) leaf.ref[ i ];
+            leaf.ref[ i ] = value;
+            return old;
+        }
+
+        Node <K> rt = insert( key, value, root );
+        if( rt != null )
+        {
+            Node <K> nr = newNode( false );
+            nr.nKeys    = 1;
+            nr.ref[ 0 ] = root;
+            nr.setKey( 0, divider );
+            nr.ref[ 1 ] = rt;
+            root        = nr;
+        }
+        keyCount++;
+        return null;
+    }
+
+    /********************************************************************************
+        Remove the key (and its value) from the B+Tree map.  Only the leaf changes.
+        @param key  the key to remove
+        @return  the value that was associated with the key, or null if there was none
+    */
+    @SuppressWarnings ( "unchecked" )
+    public V remove( long key )
+    {
+        Node <K> n = leafFor( key );
+        int      i = n.find( key );
+        if( i == n.nKeys || n.key( i ) != key )
+        {
+            return null;
+        }
+        V old = ( V ) n.ref[ i ];
+        n.moveKeys( i + 1, i, n.nKeys - i - 1 );
+        System.arraycopy( n.ref, i + 1, n.ref, i, n.nKeys - i - 1 );
+        n.nKeys--;
+        n.ref[ n.nKeys ] = null;
+        keyCount--;
+        return old;
+    }
+
+    /********************************************************************************
+        Remove all the keys from the B+Tree map.
+    */
+    public void clear()
+    {
+        root      = newNode( true );
+        firstLeaf = root;
+        keyCount  = 0;
+    }
+
+    /********************************************************************************
+        Return the size (number of keys) in the B+Tree.
+        @return  the size of the B+Tree
+    */
+    public int size()
+    {
+        return keyCount;
+    }
+
+    /********************************************************************************
+        Return an iterator over the entries whose keys lie in the given range, in key
+        order.  It descends once to the leaf where the range starts and then follows
+        the leaf links, stopping at the end of the range.  (Use Long.MIN_VALUE and
+        Long.MAX_VALUE, included, for an unbounded end.)
+        @param lo    the low end of the range
+        @param loIn  whether the low end is included
+        @param hi    the high end of the range
+        @param hiIn  whether the high end is included
+        @return  an iterator over the entries in the range
+    */
+    @SuppressWarnings ( "unchecked" )
+    public Iterator <Map.Entry <K, V>> rangeIterator( long lo, boolean loIn, long hi, boolean hiIn )
+    {
+        Node <K> start = leafFor( lo );
+        int      i     = start.find( lo );
+        if( !loIn && i < start.nKeys && start.key( i ) == lo )
+        {
+            i++;
+        }
+
+        Node <K> first = start;
+        int      pos   = i;
+
+        return new Iterator <Map.Entry <K, V>> ()
+        {
+            Node <K> n = first;
+            int      j = pos;
+
+            public boolean hasNext()
+            {
+                while( n != null && j >= n.nKeys )
+                {
+                    n = n.next;
+                    j = 0;
+                }
+                if( n != null && ( n.key( j ) > hi || ( n.key( j ) == hi && !hiIn ) ) )
+                {
+                    n = null;
+                }
+                return n != null;
+            }
+
+            public Map.Entry <K, V> next()
+            {
+                if( !hasNext() )
+                {
+                    throw new NoSuchElementException();
+                }
+                Map.Entry <K, V> e = new AbstractMap.SimpleEntry <> ( n.boxedKey( j ), ( V ) n.ref[ j ] );
+                j++;
+                return e;
+            }
+        };
+    }
+
+    /********************************************************************************
+        Descend from the root to the leaf where the key is, or would be inserted.
+        @param key  the key to look for
+        @return  the leaf for the key
+    */
+    @SuppressWarnings ( "unchecked" )
+    private Node <K> leafFor( long key )
+    {
+        Node <K> n = root;
+        while( !n.isLeaf )
+        {
+            n = ( Node <K> ) n.ref[ n.find( key ) ];
+        }
+        return n;
+    }
+
+    /********************************************************************************
+        Recursive helper function for inserting a (new) key in B+trees.  When node n has
+        to split, its new right sibling is returned and the divider key separating the
+        two is left in the divider field for the parent (or a new root) to pick up.
+        @param key  the key to insert
+        @param ref  the value to insert
+        @param n    the current node
+        @return  the new right sibling of n if n split, otherwise null
+    */
+    @SuppressWarnings ( "unchecked" )
+    private Node <K> insert( long key, V ref, Node <K> n )
+    {
+        int i = n.find( key );
+
+        if( n.isLeaf )
+        {
+            return wedge( key, ref, n, i, true );
+        }
+
+        Node <K> crt = insert( key, ref, ( Node <K> ) n.ref[ i ] );
+        return( crt == null ) ? null : wedge( divider, crt, n, i, false );
+    }
+
+    /********************************************************************************
+        Wedge the key-ref pair into node n at position i, splitting n if it is full.
+        A leaf keeps the bigger half and passes up its largest key; an internal node
+        passes up its middle key.  Either way the divider is left in the divider field.
+        @param key   the key to insert
+        @param ref   the value/node to insert
+        @param n     the current node
+        @param i     the insertion position within node n
+        @param left  whether ref goes to the left of key (leaf) or to its right (internal)
+        @return  the new right sibling of n if n split, otherwise null
+    */
+    private Node <K> wedge( long key, Object ref, Node <K> n, int i, boolean left )
+    {
+        if( n.nKeys < ORDER - 1 )
+        {
+            n.open( i, left );
+            n.setKey( i, key );
+            n.ref[ left ? i : i + 1 ] = ref;
+            return null;
+        }
+
+        // gather the ORDER keys (and ORDER + 1 refs) in order, then deal them out
+
+        long []   keys = new long[ ORDER ];
+        Object [] refs = new Object[ ORDER + 1 ];
+        int       r    = left ? i : i + 1;
+
+        for( int j = 0; j < ORDER - 1; j++ )
+        {
+            keys[ j < i ? j : j + 1 ] = n.key( j );
+        }
+        keys[ i ] = key;
+        System.arraycopy( n.ref, 0, refs, 0, r );
+        refs[ r ] = ref;
+        System.arraycopy( n.ref, r, refs, r + 1, ORDER - r );
+
+        Node <K> rt = newNode( n.isLeaf );
+        Arrays.fill( n.ref, null );
+
+        if( n.isLeaf )
+        {
+            fill( n, keys, refs, 0, MID );
+            fill( rt, keys, refs, MID, ORDER - MID );
+            divider = keys[ MID - 1 ];
+            rt.next = n.next;
+            n.next  = rt;
+        }
+        else
+        {
+            int half = ORDER / 2;
+            fill( n, keys, refs, 0, half );
+            n.ref[ half ] = refs[ half ];
+            divider = keys[ half ];
+            fill( rt, keys, refs, half + 1, ORDER - half - 1 );
+            rt.ref[ ORDER - half - 1 ] = refs[ ORDER ];
+        }
+        return rt;
+    }
+
+    /********************************************************************************
+        Fill node n with num keys (and the refs to their left) starting at from.
+        @param n     the node to fill
+        @param keys  the keys to copy from
+        @param refs  the refs to copy from
+        @param from  where to start copying from
+        @param num   the number of keys/refs to copy
+    */
+    private static void fill( Node <?> n, long [] keys, Object [] refs, int from, int num )
+    {
+        for( int j = 0; j < num; j++ )
+        {
+            n.setKey( j, keys[ from + j ] );
+        }
+        System.arraycopy( refs, from, n.ref, 0, num );
+        n.nKeys = num;
+    }
+
+}
@@ -0,0 +1,142 @@
+/****************************************************************************************
+ * @file  PrimitiveKeyMap.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class adapts an IntBpTreeMap or LongBpTreeMap to a map keyed by KeyType, so it
+ * can back the primary index of a table whose key is a single Integer or Long
+ * attribute (e.g., certNo or presNo).  The key value is unwrapped once per call and
+ * the tree is then searched on primitive keys.  Entries come out in key order.
+ *
+ * #usage new Table ( "movieExec", "certNo name address fee", "Integer String String Float",
+ *                    "certNo", Table.MapType.INT_BPTREE_MAP )
+ */
+class PrimitiveKeyMap <V> extends AbstractMap <KeyType, V> implements Serializable
+{
+    /** The primitive B+Tree holding the entries (an IntBpTreeMap or LongBpTreeMap). */
+    private final PrimitiveBpTreeMap <?, V> tree;
+
+    /************************************************************************************
+     * Construct a map backed by the given (empty) tree.
+     *
+     * @param _tree  the primitive B+Tree
+     */
+    private PrimitiveKeyMap ( PrimitiveBpTreeMap <?, V> _tree )
+    {
+        tree = _tree;
+    }
+
+    //----------------------------------------------------------------------------------
+    // Factory Methods
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return whether there is a primitive B+Tree for keys of the given domain.
+     *
+     * @param domain  the domain of the key attribute
+     * @return  whether the domain is Integer or Long
+     */
+    static boolean supports ( Class domain )
+    {
+        return domain == Integer.class || domain == Long.class;
+    }
+
+    /************************************************************************************
+     * Return an empty map backed by the primitive B+Tree for keys of the given domain.
+     *
+     * @param domain  the domain of the key attribute (Integer or Long)
+     * @return  the new map
+     */
+    static <V> PrimitiveKeyMap <V> of ( Class domain )
+    {
+        if      ( domain == Integer.class ) return new PrimitiveKeyMap <> ( new IntBpTreeMap <V> () );
+        else if ( domain == Long.class )    return new PrimitiveKeyMap <> ( new LongBpTreeMap <V> () );
+        else throw new IllegalArgumentException ( "PrimitiveKeyMap.of: unsupported domain " + domain.getName () );
+    }
+
+    //----------------------------------------------------------------------------------
+    // Map Interface
+    //----------------------------------------------------------------------------------
+
+    public V get ( Object k )                                { return tree.get ( value ( k ) ); }
+
+    public boolean containsKey ( Object k )                  { return get ( k ) != null; }
+
+    /** An IntBpTreeMap rejects (IllegalArgumentException) keys out of int range. */
+    public V put ( KeyType k, V value )                      { return tree.put ( value ( k ), value ); }
+
+    public V remove ( Object k )                             { return tree.remove ( value ( k ) ); }
+
+    public int size ()                                       { return tree.size (); }
+
+    public void clear ()                                     { tree.clear (); }
+
+    /************************************************************************************
+     * Iterate over the entries whose keys lie in the given range, in key order.
+     *
+     * @param lo    the low end of the range (null for no lower bound)
+     * @param loIn  whether the low end is included
+     * @param hi    the high end of the range (null for no upper bound)
+     * @param hiIn  whether the high end is included
+     * @return  an iterator over the entries in the range
+     */
+    Iterator <Map.Entry <KeyType, V>> rangeIterator ( KeyType lo, boolean loIn, KeyType hi, boolean hiIn )
+    {
+        return wrap ( tree.rangeIterator ( ( lo == null ) ? Long.MIN_VALUE : value ( lo ), lo == null || loIn,
+                                           ( hi == null ) ? Long.MAX_VALUE : value ( hi ), hi == null || hiIn ) );
+    }
+
+    /************************************************************************************
+     * Return a (live) set view of the entries, in key order.
+     *
+     * @return  the set view of the map
+     */
+    public Set <Map.Entry <KeyType, V>> entrySet ()
+    {
+        return new AbstractSet <Map.Entry <KeyType, V>> ()
+        {
+            public Iterator <Map.Entry <KeyType, V>> iterator () { return rangeIterator ( null, false, null, false ); }
+
+            public int size ()                                   { return PrimitiveKeyMap.this.size (); }
+        };
+    }
+
+    //----------------------------------------------------------------------------------
+    // Helpers
+    //----------------------------------------------------------------------------------
+
+    /************************************************************************************
+     * Return the (single) value of a key as a long.
+     *
+     * @param k  the key (a KeyType holding one number)
+     * @return  the key value
+     */
+    static long value ( Object k )
+    {
+        return ( ( Number ) ( ( KeyType ) k ).getKey ()[ 0 ] ).longValue ();
+    }
+
+    /************************************************************************************
+     * Turn the entries of a primitive tree into entries keyed by KeyType.
+     *
+     * @param it  the iterator over the tree's entries
+     * @return  the iterator over the corresponding KeyType entries
+     */
+    static <V> Iterator <Map.Entry <KeyType, V>> wrap ( Iterator <? extends Map.Entry <? extends Number, V>> it )
+    {
+        return new Iterator <Map.Entry <KeyType, V>> ()
+        {
+            public boolean hasNext ()                            { return it.hasNext (); }
+
+            public Map.Entry <KeyType, V> next ()
+            {
+                Map.Entry <? extends Number, V> e = it.next ();
+                return new SimpleEntry <> ( new KeyType ( ( Comparable ) e.getKey () ), e.getValue () );
+            }
+        };
+    }
+
+} // PrimitiveKeyMap class
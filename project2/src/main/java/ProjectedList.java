@@ -0,0 +1,288 @@
+/****************************************************************************************
+ * @file  ProjectedList.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class provides a read-only projection view over a table's tuples: each element
+ * is the base tuple restricted to the given column positions.  Projected tuples are
+ * formed on access, so the view itself holds no copies.  Since the projection keeps
+ * the key, the view's index (see index) is served from the base table's index.
+ * The projection is only copied (along with its index) when it is modified or
+ * serialized, or when the base table is about to change (see Table.detachViews), so
+ * the view never shows changes made to the base after it was created.
+ */
+class ProjectedList
+    extends AbstractList <Comparable []>
+    implements RandomAccess, Serializable
+{
+    /** The list of tuples being projected. */
+    private final List <Comparable []> base;
+
+    /** The index of the base tuples (keyed on the columns at keyPos). */
+    private final Map <KeyType, Comparable []> baseIndex;
+
+    /** The column positions in the base tuples to keep. */
+    private final int [] colPos;
+
+    /** The column positions of the key in the base tuples. */
+    private final int [] keyPos;
+
+    /** The materialized projection, null while this is still a view. */
+    private List <Comparable []> copy;
+
+    /** The (initially empty) map that the projection is indexed in once materialized. */
+    private Map <KeyType, Comparable []> copyIndex;
+
+    /************************************************************************************
+     * Construct a projection view over the base list.
+     *
+     * @param _base       the tuples to project
+     * @param _baseIndex  the index of the base tuples
+     * @param _colPos     the column positions to keep (including the key's)
+     * @param _keyPos     the column positions of the key in the base tuples
+     */
+    ProjectedList ( List <Comparable []> _base, Map <KeyType, Comparable []> _baseIndex,
+                    int [] _colPos, int [] _keyPos )
+    {
+        base      = _base;
+        baseIndex = _baseIndex;
+        colPos    = _colPos;
+        keyPos    = _keyPos;
+    }
+
+    /************************************************************************************
+     * Return the index of the projection: a view over the base index until the
+     * projection is materialized, and then the given map filled with the copies.
+     *
+     * @param emptyIndex  the map to index the copied tuples in
+     * @return  the index view
+     */
+    Map <KeyType, Comparable []> index ( Map <KeyType, Comparable []> emptyIndex )
+    {
+        copyIndex = emptyIndex;
+        return new Index ();
+    }
+
+    /************************************************************************************
+     * Get the ith projected tuple.
+     *
+     * @param i  the index of the tuple to get
+     * @return  the ith tuple
+     */
+    public Comparable [] get ( int i )
+    {
+        return ( copy != null ) ? copy.get ( i ) : project ( base.get ( i ) );
+    }
+
+    /************************************************************************************
+     * Return the number of tuples in the projection.
+     *
+     * @return  the number of tuples
+     */
+    public int size ()
+    {
+        return ( copy != null ) ? copy.size () : base.size ();
+    }
+
+    /************************************************************************************
+     * Add a tuple to the projection, copying it out of the base list first.
+     *
+     * @param tup  the tuple to add
+     * @return  true
+     */
+    public boolean add ( Comparable [] tup )
+    {
+        return materialize ().add ( tup );
+    }
+
+    /************************************************************************************
+     * Insert a tuple at position i, copying the projection out of the base list first.
+     *
+     * @param i    the position to insert at
+     * @param tup  the tuple to insert
+     */
+    public void add ( int i, Comparable [] tup )
+    {
+        materialize ().add ( i, tup );
+    }
+
+    /************************************************************************************
+     * Replace the tuple at position i, copying the projection out of the base list first.
+     *
+     * @param i    the position of the tuple to replace
+     * @param tup  the new tuple
+     * @return  the tuple previously at position i
+     */
+    public Comparable [] set ( int i, Comparable [] tup )
+    {
+        return materialize ().set ( i, tup );
+    }
+
+    /************************************************************************************
+     * Remove the tuple at position i, copying the projection out of the base list first.
+     *
+     * @param i  the position of the tuple to remove
+     * @return  the removed tuple
+     */
+    public Comparable [] remove ( int i )
+    {
+        return materialize ().remove ( i );
+    }
+
+    /************************************************************************************
+     * Copy the projection out of the base list (and index) before the base changes.
+     */
+    void detach ()
+    {
+        materialize ();
+    }
+
+    /************************************************************************************
+     * Project a base tuple onto the kept columns.
+     *
+     * @param t  the base tuple
+     * @return  the projected tuple
+     */
+    private Comparable [] project ( Comparable [] t )
+    {
+        Comparable [] tup = new Comparable[ colPos.length ];
+
+        for ( int j = 0; j < colPos.length; j++ )
+        {
+            tup[ j ] = t[ colPos[ j ] ];
+        }
+        return tup;
+    }
+
+    /************************************************************************************
+     * Copy the projected tuples into a list of their own (once), index the copies in
+     * copyIndex if the base tuples were indexed, and detach from base.
+     *
+     * @return  the materialized list
+     */
+    private List <Comparable []> materialize ()
+    {
+        if ( copy == null )
+        {
+            List <Comparable []> rows    = new ArrayList <> ( base.size () );
+            boolean              indexed = baseIndex.size () == base.size ();
+
+            for ( Comparable [] t : base )
+            {
+                Comparable [] tup = project ( t );
+                rows.add ( tup );
+
+                if ( indexed )
+                {
+                    Comparable [] keyVal = new Comparable[ keyPos.length ];
+
+                    for ( int j = 0; j < keyPos.length; j++ )
+                    {
+                        keyVal[ j ] = t[ keyPos[ j ] ];
+                    }
+                    copyIndex.put ( new KeyType ( keyVal ), tup );
+                }
+            }
+            copy = rows;
+        }
+        return copy;
+    }
+
+    /************************************************************************************
+     * Serialize the projected tuples as a plain list rather than the view (which would
+     * drag the whole base list along).
+     *
+     * @return  the list to serialize in place of this view
+     */
+    private Object writeReplace () throws ObjectStreamException
+    {
+        return new ArrayList <> ( materialize () );
+    }
+
+    /************************************************************************************
+     * This inner class is the index of the projection.  While the projection is a
+     * view, a lookup goes to the base index and projects the tuple found; afterward
+     * it goes to copyIndex.  Changing it materializes the projection first.
+     */
+    private class Index
+        extends AbstractMap <KeyType, Comparable []>
+        implements Serializable
+    {
+        public Comparable [] get ( Object k )
+        {
+            if ( copy != null )
+            {
+                return copyIndex.get ( k );
+            }
+            Comparable [] t = baseIndex.get ( k );
+            return ( t == null ) ? null : project ( t );
+        }
+
+        public boolean containsKey ( Object k )
+        {
+            return ( copy != null ) ? copyIndex.containsKey ( k ) : baseIndex.containsKey ( k );
+        }
+
+        public int size ()
+        {
+            return ( copy != null ) ? copyIndex.size () : baseIndex.size ();
+        }
+
+        public Comparable [] put ( KeyType k, Comparable [] tup )
+        {
+            materialize ();
+            return copyIndex.put ( k, tup );
+        }
+
+        public Comparable [] remove ( Object k )
+        {
+            materialize ();
+            return copyIndex.remove ( k );
+        }
+
+        public void clear ()
+        {
+            materialize ();
+            copyIndex.clear ();
+        }
+
+        public Set <Map.Entry <KeyType, Comparable []>> entrySet ()
+        {
+            if ( copy != null )
+            {
+                return copyIndex.entrySet ();
+            }
+            return new AbstractSet <Map.Entry <KeyType, Comparable []>> ()
+            {
+                public int size ()                                  { return baseIndex.size (); }
+
+                public Iterator <Map.Entry <KeyType, Comparable []>> iterator ()
+                {
+                    Iterator <Map.Entry <KeyType, Comparable []>> it = baseIndex.entrySet ().iterator ();
+
+                    return new Iterator <Map.Entry <KeyType, Comparable []>> ()
+                    {
+                        public boolean hasNext ()                   { return it.hasNext (); }
+
+                        public Map.Entry <KeyType, Comparable []> next ()
+                        {
+                            Map.Entry <KeyType, Comparable []> e = it.next ();
+                            return new SimpleEntry <> ( e.getKey (), project ( e.getValue () ) );
+                        }
+                    };
+                }
+            };
+        }
+
+        /** Serialize the copied index rather than the view (see ProjectedList.writeReplace). */
+        private Object writeReplace () throws ObjectStreamException
+        {
+            materialize ();
+            return copyIndex;
+        }
+    } // Index
+
+} // ProjectedList class
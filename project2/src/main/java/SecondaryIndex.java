@@ -0,0 +1,284 @@
+/****************************************************************************************
+ * @file  SecondaryIndex.java
+ */
+
+import java.io.*;
+import java.util.*;
+
+/****************************************************************************************
+ * This class implements secondary indices on (possibly non-key) attributes of a table.
+ * Since many tuples may share the same values for the indexed attributes, the index
+ * maps each such (possibly composite) value to the list of tuples having it.  The map
+ * backing the index is chosen by its MapType; ordered ones (TREE_MAP, BPTREE_MAP) can
+ * also answer range queries on a single indexed attribute.  A BPTREE_MAP index is a
+ * BpTreeMultiMap, which keeps each value's list of tuples compact and lets a hot
+ * value (one shared by many tuples) gain or lose a tuple without scanning its list.
+ */
+class SecondaryIndex implements Serializable
+{
+    /** The name of the index. */
+    private final String name;
+
+    /** The indexed attributes. */
+    private final String [] attrs;
+
+    /** The column positions of the indexed attributes. */
+    private final int [] colPos;
+
+    /** The kind of map backing the index. */
+    private final Table.MapType type;
+
+    /** The index itself (maps indexed values to the tuples having them), unless multi. */
+    private final Map <KeyType, List <Comparable []>> map;
+
+    /** The B+Tree multimap serving as the index (for BPTREE_MAP), otherwise null. */
+    private final BpTreeMultiMap <KeyType, Comparable []> multi;
+
+    /************************************************************************************
+     * Construct an empty secondary index.
+     *
+     * @param _name    the name of the index
+     * @param _attrs   the indexed attributes
+     * @param _colPos  the column positions of the indexed attributes
+     * @param _type    the kind of map backing the index
+     */
+    @SuppressWarnings ( "unchecked" )
+    SecondaryIndex ( String _name, String [] _attrs, int [] _colPos, Table.MapType _type )
+    {
+        name   = _name;
+        attrs  = _attrs;
+        colPos = _colPos;
+        type   = _type;
+
+        if ( type == Table.MapType.BPTREE_MAP )
+        {
+            map   = null;
+            multi = new BpTreeMultiMap <> ( KeyType.class );
+        }
+        else
+        {
+            map   = Table.makeMap ( type, ( Class <List <Comparable []>> ) ( Class <?> ) List.class );
+            multi = null;
+        }
+    }
+
+    /************************************************************************************
+     * Add the tuple to the index.  Tuples with a null indexed value are left out.
+     *
+     * @param t  the tuple to add
+     */
+    void add ( Comparable [] t )
+    {
+        KeyType k = Table.keyOf ( t, colPos );
+
+        if ( k != null && multi != null )
+        {
+            multi.put ( k, t );
+        }
+        else if ( k != null )
+        {
+            List <Comparable []> group = map.get ( k );
+
+            if ( group == null )
+            {
+                map.put ( k, group = new ArrayList <> ( 1 ) );
+            }
+            group.add ( t );
+        }
+    }
+
+    /************************************************************************************
+     * Remove the tuple from the index, dropping its indexed value once no tuple has it.
+     *
+     * @param t  the tuple to remove
+     */
+    void remove ( Comparable [] t )
+    {
+        KeyType k = Table.keyOf ( t, colPos );
+
+        if ( k != null && multi != null )
+        {
+            multi.remove ( k, t );
+        }
+        else if ( k != null )
+        {
+            List <Comparable []> group = map.get ( k );
+
+            if ( group != null )
+            {
+                group.removeIf ( u -> u == t || Arrays.equals ( u, t ) );
+
+                if ( group.isEmpty () )
+                {
+                    map.remove ( k );
+                }
+            }
+        }
+    }
+
+    /************************************************************************************
+     * Add all the tuples to the (empty) index.  A B+Tree index is bulk loaded from the
+     * sorted groups rather than built by repeated inserts.
+     *
+     * @param ts  the tuples to add
+     */
+    void addAll ( List <Comparable []> ts )
+    {
+        if ( multi == null || multi.size () > 0 )
+        {
+            for ( Comparable [] t : ts )
+            {
+                add ( t );
+            }
+            return;
+        }
+
+        Map <KeyType, List <Comparable []>> groups = new HashMap <> ();
+
+        for ( Comparable [] t : ts )
+        {
+            KeyType k = Table.keyOf ( t, colPos );
+
+            if ( k != null )
+            {
+                groups.computeIfAbsent ( k, x -> new ArrayList <> ( 1 ) ).add ( t );
+            }
+        }
+
+        List <Map.Entry <KeyType, List <Comparable []>>> entries = new ArrayList <> ( groups.entrySet () );
+        entries.sort ( Map.Entry.comparingByKey () );
+
+        multi.bulkLoad ( entries.iterator (), Table.BULK_FILL );
+    }
+
+    /************************************************************************************
+     * Return the tuples having the given values for the indexed attributes.
+     *
+     * @param k  the indexed values
+     * @return  the matching tuples (possibly empty)
+     */
+    List <Comparable []> get ( KeyType k )
+    {
+        if ( multi != null )
+        {
+            return multi.get ( k );
+        }
+
+        List <Comparable []> group = map.get ( k );
+        return ( group == null ) ? Collections.emptyList () : group;
+    }
+
+    /************************************************************************************
+     * Return whether the index can answer range queries (it is ordered and is on a
+     * single attribute).
+     *
+     * @return  whether range is supported
+     */
+    boolean isOrdered ()
+    {
+        return attrs.length == 1 && ( multi != null || map instanceof NavigableMap );
+    }
+
+    /************************************************************************************
+     * Iterate over the tuples whose indexed value lies in the given range, in order of
+     * the indexed value.  Only supported by ordered indices.  An empty range (low above
+     * high, or low equal to high with an end excluded) yields no tuples.
+     *
+     * @param low     the low end of the range (null for no lower bound)
+     * @param lowIn   whether the low end is included
+     * @param high    the high end of the range (null for no upper bound)
+     * @param highIn  whether the high end is included
+     * @return  an iterator over the tuples in the range
+     */
+    @SuppressWarnings ( "unchecked" )
+    Iterator <Comparable []> range ( Comparable low, boolean lowIn, Comparable high, boolean highIn )
+    {
+        if ( new Expression.Range ( low, lowIn, high, highIn ).isEmpty () )
+        {
+            return Collections.emptyIterator ();
+        }
+
+        KeyType lo = ( low  == null ) ? null : new KeyType ( low );
+        KeyType hi = ( high == null ) ? null : new KeyType ( high );
+
+        if ( multi != null )
+        {
+            return multi.rangeIterator ( lo, lowIn, hi, highIn );
+        }
+
+        Iterator <Map.Entry <KeyType, List <Comparable []>>> it;
+
+        if ( map instanceof NavigableMap )
+        {
+            NavigableMap <KeyType, List <Comparable []>> sub = ( NavigableMap <KeyType, List <Comparable []>> ) map;
+
+            if ( lo != null )
+            {
+                sub = sub.tailMap ( lo, lowIn );
+            }
+            if ( hi != null )
+            {
+                sub = sub.headMap ( hi, highIn );
+            }
+            it = sub.entrySet ().iterator ();
+        }
+        else
+        {
+            throw new UnsupportedOperationException ( "SecondaryIndex.range: " + type + " index " + name + " is unordered" );
+        }
+
+        return new Iterator <Comparable []> ()
+        {
+            Iterator <Comparable []> group = Collections.emptyIterator ();
+
+            public boolean hasNext ()
+            {
+                while ( ! group.hasNext () && it.hasNext () )
+                {
+                    group = it.next ().getValue ().iterator ();
+                }
+                return group.hasNext ();
+            }
+
+            public Comparable [] next ()
+            {
+                if ( ! hasNext () )
+                {
+                    throw new NoSuchElementException ();
+                }
+                return group.next ();
+            }
+        };
+    }
+
+    /************************************************************************************
+     * Return the name of the index.
+     *
+     * @return  the index name
+     */
+    String getName ()
+    {
+        return name;
+    }
+
+    /************************************************************************************
+     * Return the indexed attributes.
+     *
+     * @return  the attribute names
+     */
+    String [] attributes ()
+    {
+        return attrs;
+    }
+
+    /************************************************************************************
+     * Convert the index description to a string.
+     *
+     * @return  the string form of the index
+     */
+    public String toString ()
+    {
+        return name + " ( " + String.join ( " ", attrs ) + " ) using " + type;
+    }
+
+} // SecondaryIndex class
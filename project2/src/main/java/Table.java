@@ -6,7 +6,11 @@
  */
 
 import java.io.*;
+import java.lang.ref.WeakReference;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.*;
 import java.util.function.*;
 import java.util.stream.*;
 
@@ -16,8 +20,8 @@ import static java.lang.System.out;
 /****************************************************************************************
  * This class implements relational database tables (including attribute names, domains
  * and a list of tuples.  Five basic relational algebra operators are provided: project,
- * select, union, minus and join.  The insert data manipulation operator is also provided.
- * Missing are update and delete data manipulation operators.
+ * select, union, minus and join.  The insert and delete data manipulation operators are
+ * also provided.  Missing is the update data manipulation operator.
  */
 public class Table implements Serializable
 {
@@ -30,6 +34,21 @@ public class Table implements Serializable
     /** Counter for naming temp variables */
     private static int count = 0;
 
+    /** Joins whose inputs hold fewer tuples than this (in total) are run sequentially */
+    private static final int PARALLEL_THRESHOLD = 1 << 14;
+
+    /** Number of hash partitions joined in parallel (1 means always run sequentially) */
+    private static int parallelism = ForkJoinPool.getCommonPoolParallelism ();
+
+    /** Maximum number of tuples a join may load into an in-memory hash table */
+    private static int memoryBudget = 1 << 20;
+
+    /** Maximum number of bytes of a String value in a packed tuple */
+    static final int STRING_SIZE = 64;
+
+    /** Fraction of each node filled when a B+Tree index is bulk loaded (room is left for inserts) */
+    static final double BULK_FILL = 0.75;
+
     /** Table name. */
     private final String name;
 
@@ -50,14 +69,39 @@ public class Table implements Serializable
     private final String [] key;
 
     /** Index into tuples (maps key to tuple number). */
-    private final Map <KeyType, Comparable []> index;
+    private Map <KeyType, Comparable []> index;
+
+    /** The kind of map backing the index. */
+    private MapType indexType;
+
+    /** The kind of map backing the index of newly constructed tables. */
+    private static MapType defaultIndexType = MapType.TREE_MAP;
+
+    /** Secondary indices by name (map indexed values to the tuples having them). */
+    private final Map <String, SecondaryIndex> indices = new LinkedHashMap <> ();
+
+    /** The projection views over this table's tuples (see detachViews). */
+    private transient List <WeakReference <ProjectedList>> views;
+
+    /** The kinds of maps that may back an index (DISK_BPTREE_MAP, INT_BPTREE_MAP and
+     *  DISK_LINHASH_MAP for primary indices only; INT_BPTREE_MAP needs a single Integer
+     *  or Long key attribute and falls back to BPTREE_MAP for other keys). */
+    public enum MapType { TREE_MAP, HASH_MAP, BPTREE_MAP, LINHASH_MAP, DISK_BPTREE_MAP, INT_BPTREE_MAP,
+                          DISK_LINHASH_MAP }
+
+    /** Filename extension for the page files of disk-based indices */
+    private static final String IDX_EXT = ".idx";
+
+    /** Filename extension for the bucket pages of disk-based hash indices */
+    private static final String HASH_EXT = ".lhx";
 
     //----------------------------------------------------------------------------------
     // Constructors
     //----------------------------------------------------------------------------------
 
     /************************************************************************************
-     * Construct an empty table from the meta-data specifications.
+     * Construct an empty table from the meta-data specifications.  Like the results of
+     * operators, which are built this way, it keeps its index in memory (see inMemory).
      *
      * @param _name       the name of the relation
      * @param _attribute  the string containing attributes names
@@ -66,16 +110,13 @@ public class Table implements Serializable
      */
     public Table ( String _name, String [] _attribute, Class [] _domain, String [] _key )
     {
-        name      = _name;
-        attribute = _attribute;
-        domain    = _domain;
-        key       = _key;
-        tuples    = new ArrayList <>();
-        index     = new TreeMap <>();
+        this ( _name, _attribute, _domain, _key, new ArrayList <>(), inMemory ( defaultIndexType ) );
     }
 
     /************************************************************************************
      * Construct a table from the meta-data specifications and data in _tuples list.
+     * Operators build their results this way, so the table keeps its index in memory
+     * (see inMemory) rather than in a file of its own.
      *
      * @param _name       the name of the relation
      * @param _attribute  the string containing attributes names
@@ -85,13 +126,30 @@ public class Table implements Serializable
      */
     public Table ( String _name, String [] _attribute, Class [] _domain, String [] _key,
                    List <Comparable []> _tuples )
+    {
+        this ( _name, _attribute, _domain, _key, _tuples, inMemory ( defaultIndexType ) );
+    }
+
+    /************************************************************************************
+     * Construct a table from the meta-data specifications and data in _tuples list,
+     * with its index backed by the given kind of map.
+     *
+     * @param _name       the name of the relation
+     * @param _attribute  the string containing attributes names
+     * @param _domain     the string containing attribute domains (data types )
+     * @param _key        the primary key
+     * @param _tuple      the list of tuples containing the data
+     * @param _indexType  the kind of map backing the index
+     */
+    public Table ( String _name, String [] _attribute, Class [] _domain, String [] _key,
+                   List <Comparable []> _tuples, MapType _indexType )
     {
         name      = _name;
         attribute = _attribute;
         domain    = _domain;
         key       = _key;
         tuples    = _tuples;
-        index     = new TreeMap <>();
+        index     = newIndex ( _indexType );
     }
 
     /************************************************************************************
@@ -103,9 +161,28 @@ public class Table implements Serializable
      */
     public Table ( String name, String attributes, String domains, String _key )
     {
-        this ( name, attributes.split ( " " ), findClass ( domains.split ( " " ) ), _key.split ( " " ) );
+        this ( name, attributes, domains, _key, defaultIndexType );
+    }
+
+    /************************************************************************************
+     * Construct an empty table from the raw string specifications, with its index
+     * backed by the given kind of map.
+     *
+     * #usage new Table ( "studio", "name address presNo", "String String Integer", "name",
+     *                    Table.MapType.LINHASH_MAP )
+     *
+     * @param name        the name of the relation
+     * @param attributes  the string containing attributes names
+     * @param domains     the string containing attribute domains (data types )
+     * @param _key        the primary key
+     * @param indexType   the kind of map backing the index
+     */
+    public Table ( String name, String attributes, String domains, String _key, MapType indexType )
+    {
+        this ( name, attributes.split ( " " ), findClass ( domains.split ( " " ) ), _key.split ( " " ),
+               new ArrayList <>(), indexType );
 
-        out.println ( "DDL> create table " + name + " ( " + attributes + " )" );
+        out.println ( "DDL> create table " + name + " ( " + attributes + " ) using " + indexType );
     }
 
     //----------------------------------------------------------------------------------
@@ -114,7 +191,15 @@ public class Table implements Serializable
 
     /************************************************************************************
      * Project the tuples onto a lower dimension by keeping only the given attributes.
-     * Check whether the original key is included in the projection.
+     * Check whether the original key is included in the projection.  If it is, the
+     * result is a read-only view over this table's tuples (see ProjectedList): the
+     * column positions are worked out once, its index is served from this table's
+     * index, and values are only copied when the result is saved or modified, or just
+     * before this table is changed, so the result never sees later changes to this
+     * table.  Otherwise the projected
+     * tuples become the key, so duplicates are eliminated (by hashing, or by an external
+     * sort for tables over the memory budget) and the result's index is built as the
+     * distinct tuples are emitted.
      *
      * #usage movie.project( "title year studioNo" )
      *
@@ -126,14 +211,49 @@ public class Table implements Serializable
         out.println ( "RA> " + name + ".project( " + attributes + " )" );
 
         String [] attrs     = attributes.split ( " " );
-        Class  [] colDomain = extractDom ( match ( attrs ), domain );
-        String [] newKey    = ( Arrays.asList ( attrs ).containsAll ( Arrays.asList ( key ) ) ) ? key : attrs;
+        int    [] colPos    = match ( attrs );
+        Class  [] colDomain = extractDom ( colPos, domain );
+        boolean   keepsKey  = Arrays.asList ( attrs ).containsAll ( Arrays.asList ( key ) );
+        String [] newKey    = keepsKey ? key : attrs;
 
-        List <Comparable []> rows = new ArrayList <>();
+        if ( keepsKey )
+        {
+            ProjectedList view   = new ProjectedList ( tuples, index, colPos, match ( key ) );
+            Table         result = new Table ( name + count++, attrs, colDomain, newKey, view );
+
+            result.index = view.index ( result.index );
+
+            if ( views == null )
+            {
+                views = new ArrayList <> ();
+            }
+            views.removeIf ( v -> v.get () == null );
+            views.add ( new WeakReference <> ( view ) );
+            return result;
+        }
 
-        tuples.stream().forEach ( tuple -> { rows.add ( this.extract ( tuple, attrs ) ); } );
+        Table result = new Table ( name + count++, attrs, colDomain, newKey );
+
+        if ( tuples.size () <= memoryBudget || ! result.sortDistinct ( tuples, colPos ) )
+        {
+            result.hashDistinct ( tuples, colPos );
+        }
+        return result;
+    }
 
-        return new Table ( name + count++, attrs, colDomain, newKey, rows );
+    /************************************************************************************
+     * Start a pipelined query over this table.  Operators chained onto the returned
+     * scan (select, project, join) are evaluated lazily, one tuple at a time, and
+     * nothing is materialized until the result is iterated or turned into a table.
+     *
+     * #usage movie.scan ().select ( t -> t[ movie.col ( "year" ) ].equals ( 1977 ) )
+     *                     .project ( "title studioName" ).toTable ( "oldMovies" )
+     *
+     * @return  an operator scanning the tuples of this table
+     */
+    public Operator scan ()
+    {
+        return new Operator.Scan ( attribute, domain, key, tuples );
     }
 
     /************************************************************************************
@@ -152,6 +272,38 @@ public class Table implements Serializable
                            tuples.stream().filter ( tuple -> predicate.test ( tuple ) ).collect ( Collectors.toList() ) );
     }
 
+    /************************************************************************************
+     * Select the tuples satisfying the given condition.  The condition's columns are
+     * resolved once.  If it fixes every key attribute to a value (key = value), the
+     * tuple is fetched from the index; if it bounds a single-attribute key to a range
+     * and the index is ordered (any kind but HASH_MAP and LINHASH_MAP), only that range
+     * of the index is scanned.  Secondary indices are used the same way: a lookup when the condition
+     * fixes all of an index's attributes, a range scan when it bounds the attribute of
+     * an ordered one.  Otherwise all the tuples are tested.
+     *
+     * #usage movie.select ( Expression.lt ( Expression.col ( "year" ), Expression.lit ( 1980 ) ) )
+     *
+     * @param condition  the check condition for tuples
+     * @return  a table with tuples satisfying the condition
+     */
+    public Table select ( Expression condition )
+    {
+        out.println ( "RA> " + name + ".select( " + condition + " )" );
+
+        Predicate <Comparable []> predicate = condition.bind ( this );
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        for ( Comparable [] t : candidates ( condition ) )
+        {
+            if ( predicate.test ( t ) )
+            {
+                rows.add ( t );
+            }
+        }
+        return new Table ( name + count++, attribute, domain, key, rows );
+    }
+
     /************************************************************************************
      * Select the tuples satisfying the given key predicate (key = value).  Use an index
      * (Map) to retrieve the tuple with the given key value.
@@ -177,6 +329,85 @@ public class Table implements Serializable
         return result;
     }
 
+    /************************************************************************************
+     * Select the tuples whose value for the given attribute lies in [low, high).
+     *
+     * #usage movie.select ( "year", null, 1980 )
+     *
+     * @param attr  the attribute to compare
+     * @param low   the low end of the range (inclusive, null for no lower bound)
+     * @param high  the high end of the range (exclusive, null for no upper bound)
+     * @return  a table with the tuples in the range
+     */
+    public Table select ( String attr, Comparable low, Comparable high )
+    {
+        return select ( attr, low, true, high, false );
+    }
+
+    /************************************************************************************
+     * Select the tuples whose value for the given attribute lies between low and high.
+     * The tuples come from the primary index when the attribute is the key and the
+     * index is ordered, or else from an ordered secondary index on the attribute: the
+     * index is descended once to low and walked up to high, so no other tuples are
+     * looked at.  Without such an index, all the tuples are tested (no index is
+     * created).  The result is in ascending order of the attribute.
+     *
+     * #usage movie.select ( "year", 1970, true, 1980, false )
+     *
+     * @param attr    the attribute to compare
+     * @param low     the low end of the range (null for no lower bound)
+     * @param lowIn   whether the low end is included
+     * @param high    the high end of the range (null for no upper bound)
+     * @param highIn  whether the high end is included
+     * @return  a table with the tuples in the range
+     */
+    public Table select ( String attr, Comparable low, boolean lowIn, Comparable high, boolean highIn )
+    {
+        out.println ( "RA> " + name + ".select( " + attr + " in " + ( lowIn ? "[" : "(" ) + low + ", "
+                                                 + high + ( highIn ? "]" : ")" ) + " )" );
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        if ( col ( attr ) < 0 )
+        {
+            out.println ( "select: cannot find the attribute " + attr );
+        }
+        else
+        {
+            rangeScan ( attr, low, lowIn, high, highIn ).forEachRemaining ( rows::add );
+        }
+        return new Table ( name + count++, attribute, domain, key, rows );
+    }
+
+    /************************************************************************************
+     * Select the tuples having the given values for the attributes of a secondary index
+     * by looking them up in the index.
+     *
+     * #usage movie.select ( "movieByStudio", new KeyType ( "Fox" ) )
+     *
+     * @param indexName  the name of the secondary index
+     * @param keyVal     the values for the indexed attributes
+     * @return  a table with the tuples having those values
+     */
+    public Table select ( String indexName, KeyType keyVal )
+    {
+        out.println ( "RA> " + name + ".select( " + indexName + ", " + keyVal + " )" );
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        SecondaryIndex idx = indices.get ( indexName );
+
+        if ( idx == null )
+        {
+            out.println ( "select: no index named " + indexName );
+        }
+        else
+        {
+            rows.addAll ( idx.get ( keyVal ) );
+        }
+        return new Table ( name + count++, attribute, domain, key, rows );
+    }
+
     /************************************************************************************
      * Union this table and table2.  Check that the two tables are compatible.
      *
@@ -272,7 +503,12 @@ public class Table implements Serializable
     /************************************************************************************
      * Join this table and table2 by performing an "equi-join".  Tuples from both tables
      * are compared requiring attributes1 to equal attributes2.  Disambiguate attribute
-     * names by append "2" to the end of any duplicate attribute name.
+     * names by append "2" to the end of any duplicate attribute name.  The join is
+     * evaluated as a hash join: the smaller table is loaded into a hash table keyed on
+     * its join attributes (build) and the larger table is streamed against it (probe).
+     * When attributes2 is exactly table2's primary key and table2's index holds all its
+     * tuples (see indexed), that index is probed once per tuple of this table instead
+     * (index nested-loop join).
      *
      * #usage movie.join ( "studioNo", "name", studio)
      *
@@ -290,158 +526,176 @@ public class Table implements Serializable
 
         List <Comparable []> rows = new ArrayList <>();
 
-        int col_attrs1 =   this.col ( t_attrs[ 0 ] );
-        int col_attrs2 = table2.col ( u_attrs[ 0 ] );
+        Table result = new Table ( name + count++, ArrayUtil.concat ( attribute, disambiguate ( table2.attribute ) ),
+                                   ArrayUtil.concat ( domain, table2.domain ), key, rows );
+
+        int [] t_cols =   this.cols ( t_attrs );
+        int [] u_cols = table2.cols ( u_attrs );
 
-        for ( int i = 0; i < this.tuples.size(); i++ )
+        if ( t_cols == null || u_cols == null || t_attrs.length != u_attrs.length )
         {
-            for ( int j = 0; j < table2.tuples.size(); j++ )
-            {
+            out.println ( "join: attributes1 and attributes2 must name the same number of existing attributes" );
+            return result;
+        }
 
-                Comparable[] tuple1 = this.tuples.get ( i );
-                Comparable[] tuple2 = table2.tuples.get ( j );
+        int [] k_cols = table2.indexed () ? table2.keyOrder ( u_attrs, t_cols ) : null;
 
-                try
-                {
-                    if ( tuple1[ col_attrs1 ].equals ( tuple2[ col_attrs2 ] ) )
-                    {
-                        rows.add ( ArrayUtil.concat ( tuple1, tuple2 ) );
-                    }
-                }
-                catch ( Exception e )
+        if ( k_cols != null )
+        {
+            for ( Comparable [] t : this.tuples )
+            {
+                KeyType k = keyOf ( t, k_cols );
+                Comparable [] u = ( k == null ) ? null : table2.index.get ( k );
+
+                if ( u != null )
                 {
-                    System.out.println ( "We cannot find the atrribute you are looking for." );
+                    rows.add ( ArrayUtil.concat ( t, u ) );
                 }
             }
+            return result;
         }
 
-        for ( int i = 0; i < this.attribute.length; i++ )
+        int [] u_keep = new int[ table2.attribute.length ];
+
+        for ( int j = 0; j < u_keep.length; j++ )
         {
-            for ( int j = 0; j < table2.attribute.length; j++ )
-            {
-                if ( this.attribute[ i ].equals ( table2.attribute[ j ] ) )
-                {
-                    table2.attribute[ j ] += "2";
-                }
-            }
+            u_keep[ j ] = j;
         }
 
-        return new Table ( name + count++, ArrayUtil.concat ( attribute, table2.attribute ),
-                           ArrayUtil.concat ( domain, table2.domain ), key, rows );
+        rows.addAll ( hashJoin ( this, t_cols, table2, u_cols, u_keep ) );
+
+        return result;
     }
 
     /************************************************************************************
-     * Join this table and table2 by performing an "natural join".  Tuples from both tables
-     * are compared requiring common attributes to be equal.  The duplicate column is also
-     * eliminated.
+     * Join this table and table2 by performing an "equi-join" using the sort-merge
+     * algorithm.  Each side is scanned in join-key order: from its index when the join
+     * attributes are its primary key (in key order) and the index is ordered, otherwise
+     * from a BpTreeMap built on the join attributes.  The two sorted streams are then
+     * merged, walking each side once.  The result is the same as for join.
      *
-     * #usage movieStar.join (starsIn)
+     * #usage movie.mergeJoin ( "studioName", "name", studio )
      *
-     * @param table2  the rhs table in the join operation
+     * @param attributes1  the attributes of this table to be compared (Foreign Key )
+     * @param attributes2  the attributes of table2 to be compared (Primary Key )
+     * @param table2       the rhs table in the join operation
      * @return  a table with tuples satisfying the equality predicate
      */
-    public Table join ( Table table2 )
+    public Table mergeJoin ( String attributes1, String attributes2, Table table2 )
     {
-        out.println ( "RA> " + name + ".join ( " + table2.name + " )" );
+        out.println ( "RA> " + name + ".mergeJoin ( " + attributes1 + ", " + attributes2 + ", " + table2.name + " )" );
 
-        List <Comparable []> rows = new ArrayList <> ();
-        List<Integer> matching1   = new ArrayList <> ();
-        List<Integer> matching2   = new ArrayList <> ();
+        String [] t_attrs = attributes1.split ( " " );
+        String [] u_attrs = attributes2.split ( " " );
 
-        boolean match   = false;
-        int match_count = 0;
+        List <Comparable []> rows = new ArrayList <>();
 
-        for ( int i = 0; i < this.attribute.length; i++ )
-        {
-            int z = i;
+        Table result = new Table ( name + count++, ArrayUtil.concat ( attribute, disambiguate ( table2.attribute ) ),
+                                   ArrayUtil.concat ( domain, table2.domain ), key, rows );
 
-            Predicate <Comparable> predicate = ( s ) -> s.equals ( this.attribute[ z ] );
+        int [] t_cols =   this.cols ( t_attrs );
+        int [] u_cols = table2.cols ( u_attrs );
 
-            for ( int j = 0; j < table2.attribute.length; j++ )
-            {
-                if ( predicate.test ( table2.attribute[ j ] ) )
-                {
-                    matching1.add ( i );
-                    matching2.add ( j );
-                }
-            }
+        if ( t_cols == null || u_cols == null || t_attrs.length != u_attrs.length )
+        {
+            out.println ( "mergeJoin: attributes1 and attributes2 must name the same number of existing attributes" );
+            return result;
         }
 
-        for ( int i = 0; i < this.tuples.size(); i++ )
-        {
-            for ( int j = 0; j < table2.tuples.size(); j++ )
-            {
-                match_count = 0;
+        Iterator <Map.Entry <KeyType, List <Comparable []>>> it1 =   this.sortedGroups ( t_cols );
+        Iterator <Map.Entry <KeyType, List <Comparable []>>> it2 = table2.sortedGroups ( u_cols );
 
-                for ( int x = 0; x < matching1.size(); x++ )
-                {
-                    if ( this.tuples.get ( i ) [ matching1.get ( x ) ].equals ( table2.tuples.get ( j ) [ matching2.get ( x ) ] ) )
-                    {
-                        match_count++;
-                    }
-                }
-                if ( match_count == matching1.size() )
-                {
-                    Comparable[] t2_tuple = new Comparable[ table2.attribute.length - matching1.size() ];
+        Map.Entry <KeyType, List <Comparable []>> g1 = it1.hasNext () ? it1.next () : null;
+        Map.Entry <KeyType, List <Comparable []>> g2 = it2.hasNext () ? it2.next () : null;
 
-                    int colcount = 0, t2_colcount = 0;
+        while ( g1 != null && g2 != null )
+        {
+            int cmp = g1.getKey ().compareTo ( g2.getKey () );
 
-                    if ( t2_tuple.length != 0 )
+            if ( cmp == 0 )
+            {
+                for ( Comparable [] t : g1.getValue () )
+                {
+                    for ( Comparable [] u : g2.getValue () )
                     {
-                        for ( int z = 0; z < table2.attribute.length; z++ )
-                        {
-                            if ( colcount >= matching2.size() )
-                            {
-                                t2_tuple[ t2_colcount ] = table2.tuples.get ( j ) [ z ];
-                                t2_colcount++;
-                            }
-                            else if ( matching2.get ( colcount ) != z )
-                            {
-                                t2_tuple[ t2_colcount ] = table2.tuples.get ( j ) [ z ];
-                                t2_colcount++;
-                            }
-                            else
-                            {
-                                colcount++;
-                            }
-                        }
+                        rows.add ( ArrayUtil.concat ( t, u ) );
                     }
-                    rows.add ( ArrayUtil.concat ( this.tuples.get ( i ), t2_tuple ) );
                 }
             }
+            if ( cmp <= 0 )
+            {
+                g1 = it1.hasNext () ? it1.next () : null;
+            }
+            if ( cmp >= 0 )
+            {
+                g2 = it2.hasNext () ? it2.next () : null;
+            }
         }
 
-        int dupes = 0;
+        return result;
+    }
+
+    /************************************************************************************
+     * Join this table and table2 by performing an "natural join".  Tuples from both tables
+     * are compared requiring common attributes to be equal.  The duplicate column is also
+     * eliminated.  The join is evaluated as a hash join keyed on the composite of the
+     * common attributes, and the layout of the kept table2 columns is worked out once.
+     * When the common attributes are table2's key and its index holds all its tuples,
+     * that index is probed instead.
+     *
+     * #usage movieStar.join (starsIn)
+     *
+     * @param table2  the rhs table in the join operation
+     * @return  a table with tuples satisfying the equality predicate
+     */
+    public Table join ( Table table2 )
+    {
+        out.println ( "RA> " + name + ".join ( " + table2.name + " )" );
+
+        List <String>  common = new ArrayList <> ();
+        List <Integer> u_keep = new ArrayList <> ();
 
-        for ( int i = 0; i < this.attribute.length; i++ )
+        for ( int j = 0; j < table2.attribute.length; j++ )
         {
-            for ( int j = 0; j < table2.attribute.length; j++ )
+            if ( col ( table2.attribute[ j ] ) >= 0 )
             {
-                if ( this.attribute[ i ].equals ( table2.attribute[ j ] ) )
-                {
-                    table2.attribute[ j ] = "2" + table2.attribute[ j ];
-                    dupes++;
-                }
+                common.add ( table2.attribute[ j ] );
+            }
+            else
+            {
+                u_keep.add ( j );
             }
         }
 
-        String[] newAttribute = new String[ table2.attribute.length - dupes ];
+        String [] c_attrs = common.toArray ( new String[ 0 ] );
+        int    [] t_cols  = match ( c_attrs );
+        int    [] u_cols  = table2.match ( c_attrs );
+        int    [] u_kept  = u_keep.stream ().mapToInt ( Integer::intValue ).toArray ();
 
-        int l = 0;
+        List <Comparable []> rows = new ArrayList <> ();
 
-        for ( int i = 0; i < table2.attribute.length; i++ )
-        {
-            char character = table2.attribute[ i ].charAt ( 0 );
+        int [] k_cols = table2.indexed () ? table2.keyOrder ( c_attrs, t_cols ) : null;
 
-            if ( character != '2' )
+        if ( k_cols != null )
+        {
+            for ( Comparable [] t : this.tuples )
             {
-                newAttribute[ l ] = table2.attribute[ i ];
-                l++;
+                KeyType k = keyOf ( t, k_cols );
+                Comparable [] u = ( k == null ) ? null : table2.index.get ( k );
+
+                if ( u != null )
+                {
+                    rows.add ( ArrayUtil.concat ( t, extract ( u, u_kept ) ) );
+                }
             }
         }
+        else
+        {
+            rows = hashJoin ( this, t_cols, table2, u_cols, u_kept );
+        }
 
-        return new Table ( name + count++, ArrayUtil.concat ( attribute, newAttribute ),
-                           ArrayUtil.concat ( domain, table2.domain ), key, rows );
+        return new Table ( name + count++, ArrayUtil.concat ( attribute, extract ( table2.attribute, u_kept ) ),
+                           ArrayUtil.concat ( domain, extractDom ( u_kept, table2.domain ) ), key, rows );
     }
 
     /************************************************************************************
@@ -477,8 +731,6 @@ public class Table implements Serializable
 
         if ( typeCheck ( tup ) )
         {
-            tuples.add ( tup );
-
             Comparable [] keyVal = new Comparable[ key.length ];
             int []        cols   = match ( key );
 
@@ -487,7 +739,24 @@ public class Table implements Serializable
                 keyVal[ j ] = tup[ cols[ j ] ];
             }
 
-            index.put ( new KeyType ( keyVal ), tup );
+            detachViews ();
+
+            try
+            {
+                index.put ( new KeyType ( keyVal ), tup );        // a disk-based index may fail to encode it
+            }
+            catch ( IllegalArgumentException | NullPointerException ex )
+            {
+                out.println ( "insert: cannot index the tuple: " + ex.getMessage () );
+                return false;
+            }
+
+            tuples.add ( tup );
+
+            for ( SecondaryIndex idx : indices.values () )
+            {
+                idx.add ( tup );
+            }
 
             return true;
 
@@ -499,58 +768,361 @@ public class Table implements Serializable
     }
 
     /************************************************************************************
-     * Get the name of the table.
+     * Delete the tuples satisfying the given predicate, removing them from the primary
+     * index and every secondary index as well.
      *
-     * @return  the table's name
+     * #usage movie.delete ( t -> t[ movie.col ( "year" ) ].equals ( 1977 ) )
+     *
+     * @param predicate  the check condition for tuples to delete
+     * @return  the number of tuples deleted
      */
-    public String getName()
+    public int delete ( Predicate <Comparable []> predicate )
     {
-        return name;
+        out.println ( "DML> delete from " + name + " where " + predicate );
+
+        return deleteWhere ( predicate );
     }
 
     /************************************************************************************
-     * Print this table.
+     * Delete the tuples satisfying the given condition, removing them from the primary
+     * index and every secondary index as well.
+     *
+     * #usage movie.delete ( Expression.lt ( Expression.col ( "year" ), Expression.lit ( 1980 ) ) )
+     *
+     * @param condition  the check condition for tuples to delete
+     * @return  the number of tuples deleted
      */
-    public void print()
+    public int delete ( Expression condition )
     {
-        out.println ( "\n Table " + name );
-        out.print ( "|-" );
-        for ( int i = 0; i < attribute.length; i++ )
-        {
-            out.print ( "---------------" );
-        }
-        out.println ( "-|" );
-        out.print ( "| " );
-        for ( String a : attribute )
+        out.println ( "DML> delete from " + name + " where " + condition );
+
+        return deleteWhere ( condition.bind ( this ) );
+    }
+
+    /************************************************************************************
+     * Remove the tuples satisfying the predicate from the table and all its indices.
+     * The predicate is evaluated once per tuple; the tuples found are then removed by
+     * identity, so the tuple list and the indices stay in step.
+     *
+     * @param predicate  the check condition for tuples to delete
+     * @return  the number of tuples deleted
+     */
+    private int deleteWhere ( Predicate <Comparable []> predicate )
+    {
+        Set <Comparable []> doomed = Collections.newSetFromMap ( new IdentityHashMap <> () );
+
+        for ( Comparable [] t : tuples )
         {
-            out.printf ( "%15s", a );
+            if ( predicate.test ( t ) )
+            {
+                doomed.add ( t );
+            }
         }
-        out.println ( " |" );
-        out.print ( "|-" );
-        for ( int i = 0; i < attribute.length; i++ )
+        if ( doomed.isEmpty () )
         {
-            out.print ( "---------------" );
+            return 0;
         }
-        out.println ( "-|" );
-        for ( Comparable [] tup : tuples )
+
+        detachViews ();
+
+        tuples.removeIf ( doomed::contains );
+
+        int [] cols = match ( key );
+
+        for ( Comparable [] t : doomed )
         {
-            out.print ( "| " );
-            for ( Comparable attr : tup )
+            Comparable [] keyVal = new Comparable[ cols.length ];
+
+            for ( int j = 0; j < keyVal.length; j++ )
             {
-                out.printf ( "%15s", attr );
+                keyVal[ j ] = t[ cols[ j ] ];
+            }
+            index.remove ( new KeyType ( keyVal ) );
+
+            for ( SecondaryIndex idx : indices.values () )
+            {
+                idx.remove ( t );
             }
-            out.println ( " |" );
-        }
-        out.print ( "|-" );
-        for ( int i = 0; i < attribute.length; i++ )
-        {
-            out.print ( "---------------" );
         }
-        out.println ( "-|" );
-    } // print
+        return doomed.size ();
+    } // deleteWhere
 
     /************************************************************************************
-     * Print this table's index (Map).
+     * Set the number of partitions large hash joins are split into, each of which is
+     * built and probed as a separate task on the common ForkJoinPool.
+     *
+     * @param p  the degree of parallelism (1 disables parallel joins)
+     */
+    public static void setParallelism ( int p )
+    {
+        parallelism = Math.max ( 1, p );
+    }
+
+    /************************************************************************************
+     * Set the largest number of tuples a join may hold in an in-memory hash table.
+     * Joins whose smaller input exceeds it are run as Grace hash joins that spill
+     * their partitions to disk.
+     *
+     * @param tuples  the memory budget in tuples
+     */
+    public static void setMemoryBudget ( int tuples )
+    {
+        memoryBudget = Math.max ( 1, tuples );
+    }
+
+    /************************************************************************************
+     * Return the number of bytes in a packed tuple of this table: one null flag per
+     * attribute followed by the attribute's value in a fixed number of bytes.
+     *
+     * @return  the size of a packed tuple in bytes
+     */
+    public int recordSize ()
+    {
+        int size = 0;
+
+        for ( Class d : domain )
+        {
+            size += 1 + valueSize ( d );
+        }
+        return size;
+    }
+
+    /************************************************************************************
+     * Pack the tuple into a fixed length byte array (see recordSize) according to
+     * this table's domains, so that it can be stored in a FileList.
+     *
+     * @param tup  the tuple to pack
+     * @return  the packed tuple, or null if a value cannot be packed
+     */
+    public byte [] pack ( Comparable [] tup )
+    {
+        ByteBuffer buf = ByteBuffer.allocate ( recordSize () );
+
+        for ( int j = 0; j < domain.length; j++ )
+        {
+            int start = buf.position ();
+
+            buf.put ( ( byte ) ( tup[ j ] == null ? 0 : 1 ) );
+
+            if ( tup[ j ] == null )
+            {
+                // leave the value bytes zeroed
+            }
+            else if ( domain[ j ] == String.class )
+            {
+                byte [] b = ( ( String ) tup[ j ] ).getBytes ( StandardCharsets.UTF_8 );
+
+                if ( b.length > STRING_SIZE )
+                {
+                    out.println ( "pack: string longer than " + STRING_SIZE + " bytes: " + tup[ j ] );
+                    return null;
+                }
+                buf.putShort ( ( short ) b.length ).put ( b );
+            }
+            else if ( domain[ j ] == Integer.class )   buf.putInt ( ( Integer ) tup[ j ] );
+            else if ( domain[ j ] == Long.class )      buf.putLong ( ( Long ) tup[ j ] );
+            else if ( domain[ j ] == Short.class )     buf.putShort ( ( Short ) tup[ j ] );
+            else if ( domain[ j ] == Byte.class )      buf.put ( ( Byte ) tup[ j ] );
+            else if ( domain[ j ] == Double.class )    buf.putDouble ( ( Double ) tup[ j ] );
+            else if ( domain[ j ] == Float.class )     buf.putFloat ( ( Float ) tup[ j ] );
+            else if ( domain[ j ] == Character.class ) buf.putChar ( ( Character ) tup[ j ] );
+            else
+            {
+                out.println ( "pack: unsupported domain " + domain[ j ] );
+                return null;
+            }
+
+            buf.position ( start + 1 + valueSize ( domain[ j ] ) );
+        }
+        return buf.array ();
+    }
+
+    /************************************************************************************
+     * Unpack a byte array produced by pack back into a tuple.
+     *
+     * @param record  the packed tuple
+     * @return  the unpacked tuple
+     */
+    public Comparable [] unpack ( byte [] record )
+    {
+        ByteBuffer    buf = ByteBuffer.wrap ( record );
+        Comparable [] tup = new Comparable[ domain.length ];
+
+        for ( int j = 0; j < domain.length; j++ )
+        {
+            int start = buf.position ();
+
+            if ( buf.get () != 0 )
+            {
+                if ( domain[ j ] == String.class )
+                {
+                    byte [] b = new byte[ buf.getShort () ];
+                    buf.get ( b );
+                    tup[ j ] = new String ( b, StandardCharsets.UTF_8 );
+                }
+                else if ( domain[ j ] == Integer.class )   tup[ j ] = buf.getInt ();
+                else if ( domain[ j ] == Long.class )      tup[ j ] = buf.getLong ();
+                else if ( domain[ j ] == Short.class )     tup[ j ] = buf.getShort ();
+                else if ( domain[ j ] == Byte.class )      tup[ j ] = buf.get ();
+                else if ( domain[ j ] == Double.class )    tup[ j ] = buf.getDouble ();
+                else if ( domain[ j ] == Float.class )     tup[ j ] = buf.getFloat ();
+                else if ( domain[ j ] == Character.class ) tup[ j ] = buf.getChar ();
+            }
+
+            buf.position ( start + 1 + valueSize ( domain[ j ] ) );
+        }
+        return tup;
+    }
+
+    /************************************************************************************
+     * Set the kind of map backing the index of tables constructed from now on (unless
+     * one is given explicitly).
+     *
+     * @param type  the kind of map
+     */
+    public static void setDefaultIndexType ( MapType type )
+    {
+        defaultIndexType = type;
+    }
+
+    /************************************************************************************
+     * Move this table's index into a new map of the given kind.
+     *
+     * #usage movie.rebuildIndex ( Table.MapType.BPTREE_MAP )
+     *
+     * @param type  the kind of map to back the index with
+     */
+    @SuppressWarnings ( "unchecked" )
+    public void rebuildIndex ( MapType type )
+    {
+        out.println ( "DDL> alter table " + name + " index using " + type );
+
+        detachViews ();
+
+        Map <KeyType, Comparable []> newIndex = newIndex ( type );
+
+        if ( newIndex instanceof BpTreeMap )
+        {
+            List <Map.Entry <KeyType, Comparable []>> entries = new ArrayList <> ( index.entrySet () );
+
+            if ( ! ( index instanceof SortedMap || index instanceof BpTreeMap || index instanceof PrimitiveKeyMap ) )
+            {
+                entries.sort ( Map.Entry.comparingByKey () );
+            }
+            ( ( BpTreeMap <KeyType, Comparable []> ) newIndex ).bulkLoad ( entries.iterator (), BULK_FILL );
+        }
+        else
+        {
+            for ( Map.Entry <KeyType, Comparable []> e : index.entrySet () )
+            {
+                newIndex.put ( e.getKey (), e.getValue () );
+            }
+        }
+        index     = newIndex;
+    }
+
+    /************************************************************************************
+     * Create a secondary index on the given (not necessarily key) attributes.  Several
+     * tuples may share the same indexed values.  The index is kept up to date by insert,
+     * saved along with the table and used by select to avoid full scans.
+     *
+     * #usage movie.createIndex ( "movieByStudio", "studioName", Table.MapType.LINHASH_MAP )
+     *
+     * @param indexName   the name of the index
+     * @param attributes  the attributes to index
+     * @param type        the kind of map backing the index
+     * @return  whether the index was created
+     */
+    public boolean createIndex ( String indexName, String attributes, MapType type )
+    {
+        out.println ( "DDL> create index " + indexName + " on " + name + " ( " + attributes + " ) using " + type );
+
+        String [] attrs  = attributes.split ( " " );
+        int    [] colPos = cols ( attrs );
+
+        if ( colPos == null || indices.containsKey ( indexName ) )
+        {
+            out.println ( "createIndex: bad attributes or duplicate index name " + indexName );
+            return false;
+        }
+        if ( type == MapType.DISK_BPTREE_MAP || type == MapType.INT_BPTREE_MAP || type == MapType.DISK_LINHASH_MAP )
+        {
+            out.println ( "createIndex: " + type + " only backs primary indices" );
+            return false;
+        }
+
+        SecondaryIndex idx = new SecondaryIndex ( indexName, attrs, colPos, type );
+        idx.addAll ( tuples );
+        indices.put ( indexName, idx );
+        return true;
+    }
+
+    /************************************************************************************
+     * Drop the secondary index with the given name.
+     *
+     * @param indexName  the name of the index
+     * @return  whether there was such an index
+     */
+    public boolean dropIndex ( String indexName )
+    {
+        out.println ( "DDL> drop index " + indexName + " on " + name );
+
+        return indices.remove ( indexName ) != null;
+    }
+
+    /************************************************************************************
+     * Get the name of the table.
+     *
+     * @return  the table's name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /************************************************************************************
+     * Print this table.
+     */
+    public void print()
+    {
+        out.println ( "\n Table " + name );
+        out.print ( "|-" );
+        for ( int i = 0; i < attribute.length; i++ )
+        {
+            out.print ( "---------------" );
+        }
+        out.println ( "-|" );
+        out.print ( "| " );
+        for ( String a : attribute )
+        {
+            out.printf ( "%15s", a );
+        }
+        out.println ( " |" );
+        out.print ( "|-" );
+        for ( int i = 0; i < attribute.length; i++ )
+        {
+            out.print ( "---------------" );
+        }
+        out.println ( "-|" );
+        for ( Comparable [] tup : tuples )
+        {
+            out.print ( "| " );
+            for ( Comparable attr : tup )
+            {
+                out.printf ( "%15s", attr );
+            }
+            out.println ( " |" );
+        }
+        out.print ( "|-" );
+        for ( int i = 0; i < attribute.length; i++ )
+        {
+            out.print ( "---------------" );
+        }
+        out.println ( "-|" );
+    } // print
+
+    /************************************************************************************
+     * Print this table's index (Map).
      */
     public void printIndex()
     {
@@ -669,26 +1241,6 @@ public class Table implements Serializable
         return colPos;
     }
 
-    /************************************************************************************
-     * Extract the attributes specified by the column array from tuple t.
-     *
-     * @param t       the tuple to extract from
-     * @param column  the array of column names
-     * @return  a smaller tuple extracted from tuple t
-     */
-    private Comparable [] extract ( Comparable [] t, String [] column )
-    {
-        Comparable [] tup = new Comparable[ column.length ];
-        int [] colPos     = match ( column );
-
-        for ( int j = 0; j < column.length; j++ )
-        {
-            tup[ j ] = t[ colPos[ j ] ];
-        }
-
-        return tup;
-    } // extract
-
     /************************************************************************************
      * Check the size of the tuple (number of elements in list) as well as the type of
      * each value to ensure it is from the right domain.
@@ -726,6 +1278,1112 @@ public class Table implements Serializable
         return classArray;
     }
 
+    /************************************************************************************
+     * Fill this (empty) table with the distinct projections of the given rows, using its
+     * index (keyed on the whole projected tuple) to drop duplicates: a row is kept only
+     * if its projection was not yet in the index.
+     *
+     * @param rows    the tuples to project
+     * @param colPos  the column positions to project onto
+     */
+    private void hashDistinct ( List <Comparable []> rows, int [] colPos )
+    {
+        for ( Comparable [] t : rows )
+        {
+            Comparable [] tup = extract ( t, colPos );
+
+            if ( index.putIfAbsent ( new KeyType ( tup ), tup ) == null )
+            {
+                tuples.add ( tup );
+            }
+        }
+    } // hashDistinct
+
+    /************************************************************************************
+     * Fill this (empty) table with the distinct projections of the given rows using an
+     * external merge sort: sorted, duplicate-free runs of at most memoryBudget tuples are
+     * written to temporary FileLists and then merged, dropping duplicates across runs.
+     * Rows are indexed as they are added, in ascending order.
+     *
+     * @param rows    the tuples to project
+     * @param colPos  the column positions to project onto
+     * @return  whether the runs could be written (if not, this table is left empty)
+     */
+    private boolean sortDistinct ( List <Comparable []> rows, int [] colPos )
+    {
+        List <FileList>      runs = new ArrayList <> ();
+        List <Comparable []> run  = new ArrayList <> ();
+        boolean              ok   = true;
+
+        for ( int i = 0; ok && i <= rows.size (); i++ )
+        {
+            if ( i < rows.size () )
+            {
+                run.add ( extract ( rows.get ( i ), colPos ) );
+            }
+
+            if ( run.size () == memoryBudget || ( i == rows.size () && ! run.isEmpty () ) )
+            {
+                run.sort ( Table::compareTuples );
+
+                FileList      file = FileList.temp ( this );
+                Comparable [] last = null;
+
+                ok = file != null;
+
+                if ( ok )
+                {
+                    runs.add ( file );
+                }
+
+                for ( int j = 0; ok && j < run.size (); j++ )
+                {
+                    if ( last == null || compareTuples ( last, run.get ( j ) ) != 0 )
+                    {
+                        ok   = file.add ( last = run.get ( j ) );
+                    }
+                }
+                run.clear ();
+            }
+        }
+
+        if ( ok )
+        {
+            Comparable [][] head = new Comparable[ runs.size () ][];
+            int         []  pos  = new int[ runs.size () ];
+
+            PriorityQueue <Integer> heap = new PriorityQueue <> ( Math.max ( 1, runs.size () ),
+                                               ( a, b ) -> compareTuples ( head[ a ], head[ b ] ) );
+
+            for ( int r = 0; r < runs.size (); r++ )
+            {
+                head[ r ] = runs.get ( r ).get ( pos[ r ]++ );
+                heap.add ( r );
+            }
+
+            Comparable [] last = null;
+
+            while ( ! heap.isEmpty () )
+            {
+                int r = heap.poll ();
+
+                if ( last == null || compareTuples ( last, head[ r ] ) != 0 )
+                {
+                    tuples.add ( last = head[ r ] );
+                    index.put ( new KeyType ( last ), last );
+                }
+
+                if ( pos[ r ] < runs.get ( r ).size () )
+                {
+                    head[ r ] = runs.get ( r ).get ( pos[ r ]++ );
+                    heap.add ( r );
+                }
+            }
+        }
+
+        for ( FileList file : runs )
+        {
+            file.delete ();
+        }
+        return ok;
+    } // sortDistinct
+
+    /************************************************************************************
+     * Compare two tuples attribute by attribute (lexicographically), with null values
+     * ordered first (as in KeyType).
+     *
+     * @param t1  the first tuple
+     * @param t2  the second tuple
+     * @return  a negative, zero or positive integer as t1 is less, equal or greater than t2
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static int compareTuples ( Comparable [] t1, Comparable [] t2 )
+    {
+        for ( int j = 0; j < t1.length; j++ )
+        {
+            int cmp = ( t1[ j ] == null || t2[ j ] == null ) ? ( t2[ j ] == null ? 1 : 0 ) - ( t1[ j ] == null ? 1 : 0 )
+                                                         : t1[ j ].compareTo ( t2[ j ] );
+
+            if ( cmp != 0 )
+            {
+                return cmp;
+            }
+        }
+        return 0;
+    } // compareTuples
+
+    /************************************************************************************
+     * Narrow down the tuples that can satisfy the condition using the index: a point
+     * lookup when the condition fixes the whole key, a range scan when it bounds a
+     * single-attribute key and the index is ordered, and all the tuples otherwise.
+     * The primary index is only used when it holds every tuple (see indexed), and a
+     * key range that is empty (e.g., id > 5 and id < 3) yields no tuples at all.
+     *
+     * @param condition  the selection condition
+     * @return  a superset of the tuples satisfying the condition
+     */
+    @SuppressWarnings ( "unchecked" )
+    private Collection <Comparable []> candidates ( Expression condition )
+    {
+        KeyType keyVal = indexed () ? pointKey ( condition, key ) : null;
+
+        if ( keyVal != null )
+        {
+            Comparable [] t = index.get ( keyVal );
+            return ( t == null ) ? Collections.emptyList () : Collections.singletonList ( t );
+        }
+
+        Expression.Range r = ( key.length == 1 ) ? condition.range ( key[ 0 ] ) : null;
+
+        if ( r != null && r.isEmpty () )
+        {
+            return Collections.emptyList ();
+        }
+
+        Iterator <Comparable []> range = ( r == null ) ? null : keyRange ( r.low, r.lowInclusive, r.high, r.highInclusive );
+
+        if ( range != null )
+        {
+            List <Comparable []> rows = new ArrayList <> ();
+            range.forEachRemaining ( rows::add );
+            return rows;
+        }
+
+        for ( SecondaryIndex idx : indices.values () )
+        {
+            KeyType vals = pointKey ( condition, idx.attributes () );
+
+            if ( vals != null )
+            {
+                return idx.get ( vals );
+            }
+        }
+
+        for ( SecondaryIndex idx : indices.values () )
+        {
+            if ( idx.isOrdered () && ( r = condition.range ( idx.attributes ()[ 0 ] ) ) != null )
+            {
+                List <Comparable []> rows = new ArrayList <> ();
+                idx.range ( r.low, r.lowInclusive, r.high, r.highInclusive ).forEachRemaining ( rows::add );
+                return rows;
+            }
+        }
+        return tuples;
+    } // candidates
+
+    /************************************************************************************
+     * Iterate over the tuples whose (single-attribute) key lies in the given range,
+     * using the primary index if it is ordered and holds every tuple.
+     *
+     * @param low     the low end of the range (null for no lower bound)
+     * @param lowIn   whether the low end is included
+     * @param high    the high end of the range (null for no upper bound)
+     * @param highIn  whether the high end is included
+     * @return  an iterator over the tuples in key order, or null if the index cannot be used
+     */
+    @SuppressWarnings ( "unchecked" )
+    private Iterator <Comparable []> keyRange ( Comparable low, boolean lowIn, Comparable high, boolean highIn )
+    {
+        if ( key.length != 1 || ! indexed () )
+        {
+            return null;
+        }
+        if ( new Expression.Range ( low, lowIn, high, highIn ).isEmpty () )
+        {
+            return Collections.emptyIterator ();
+        }
+
+        KeyType lo = ( low  == null ) ? null : new KeyType ( low );
+        KeyType hi = ( high == null ) ? null : new KeyType ( high );
+
+        Iterator <Map.Entry <KeyType, Comparable []>> it;
+
+        if ( index instanceof BpTreeMap )
+        {
+            it = ( ( BpTreeMap <KeyType, Comparable []> ) index ).rangeIterator ( lo, lowIn, hi, highIn );
+        }
+        else if ( index instanceof DiskBpTreeMap )
+        {
+            it = ( ( DiskBpTreeMap <KeyType, Comparable []> ) index ).rangeIterator ( lo, lowIn, hi, highIn );
+        }
+        else if ( index instanceof PrimitiveKeyMap )
+        {
+            it = ( ( PrimitiveKeyMap <Comparable []> ) index ).rangeIterator ( lo, lowIn, hi, highIn );
+        }
+        else if ( index instanceof NavigableMap )
+        {
+            NavigableMap <KeyType, Comparable []> range = ( NavigableMap <KeyType, Comparable []> ) index;
+
+            if ( lo != null && hi != null )
+            {
+                range = range.subMap ( lo, lowIn, hi, highIn );
+            }
+            else if ( lo != null )
+            {
+                range = range.tailMap ( lo, lowIn );
+            }
+            else if ( hi != null )
+            {
+                range = range.headMap ( hi, highIn );
+            }
+            it = range.entrySet ().iterator ();
+        }
+        else
+        {
+            return null;
+        }
+
+        return new Iterator <Comparable []> ()
+        {
+            public boolean hasNext ()       { return it.hasNext (); }
+
+            public Comparable [] next ()    { return it.next ().getValue (); }
+        };
+    } // keyRange
+
+    /************************************************************************************
+     * Return the values the condition fixes the given attributes to, if it fixes all of
+     * them (attr = value for each one).
+     *
+     * @param condition  the selection condition
+     * @param attrs      the attributes
+     * @return  the values as a key, or null if some attribute is not fixed
+     */
+    private static KeyType pointKey ( Expression condition, String [] attrs )
+    {
+        Comparable [] vals = new Comparable[ attrs.length ];
+
+        for ( int j = 0; j < attrs.length; j++ )
+        {
+            Expression.Range r = condition.range ( attrs[ j ] );
+
+            if ( r == null || ! r.isPoint () )
+            {
+                return null;
+            }
+            vals[ j ] = r.low;
+        }
+        return new KeyType ( vals );
+    } // pointKey
+
+    /************************************************************************************
+     * Iterate over the tuples whose value for attr lies in the given range, using the
+     * primary index when attr is the (single-attribute) key and the index is ordered,
+     * else an ordered secondary index on attr.  If there is neither, the tuples are
+     * scanned and the matching ones sorted on attr (no index is created).
+     *
+     * @param attr    the attribute to compare
+     * @param low     the low end of the range (null for no lower bound)
+     * @param lowIn   whether the low end is included
+     * @param high    the high end of the range (null for no upper bound)
+     * @param highIn  whether the high end is included
+     * @return  an iterator over the tuples in the range, in attribute order
+     */
+    @SuppressWarnings ( "unchecked" )
+    private Iterator <Comparable []> rangeScan ( String attr, Comparable low, boolean lowIn,
+                                                 Comparable high, boolean highIn )
+    {
+        if ( key.length == 1 && key[ 0 ].equals ( attr ) )
+        {
+            Iterator <Comparable []> it = keyRange ( low, lowIn, high, highIn );
+
+            if ( it != null )
+            {
+                return it;
+            }
+        }
+
+        for ( SecondaryIndex idx : indices.values () )
+        {
+            if ( idx.isOrdered () && idx.attributes ()[ 0 ].equals ( attr ) )
+            {
+                return idx.range ( low, lowIn, high, highIn );
+            }
+        }
+
+        Expression.Range      r    = new Expression.Range ( low, lowIn, high, highIn );
+        int                   j    = col ( attr );
+        List <Comparable []>  rows = new ArrayList <> ();
+
+        if ( ! r.isEmpty () )
+        {
+            for ( Comparable [] t : tuples )
+            {
+                if ( r.contains ( t[ j ] ) )
+                {
+                    rows.add ( t );
+                }
+            }
+            rows.sort ( ( t1, t2 ) -> t1[ j ].compareTo ( t2[ j ] ) );
+        }
+        return rows.iterator ();
+    } // rangeScan
+
+    /************************************************************************************
+     * Rename the attributes of a rhs table that clash with this table's attributes by
+     * appending "2" to them.  The rhs table's own attribute array is left untouched.
+     *
+     * @param attrs2  the attribute names of the rhs table
+     * @return  a copy of attrs2 with the duplicate names disambiguated
+     */
+    private String [] disambiguate ( String [] attrs2 )
+    {
+        String [] renamed = attrs2.clone ();
+
+        for ( int j = 0; j < renamed.length; j++ )
+        {
+            if ( col ( renamed[ j ] ) >= 0 )
+            {
+                renamed[ j ] += "2";
+            }
+        }
+        return renamed;
+    } // disambiguate
+
+    /************************************************************************************
+     * Return the column positions for the given attribute names.
+     *
+     * @param attrs  the given attribute names
+     * @return  the column positions, or null if any attribute is not found
+     */
+    private int [] cols ( String [] attrs )
+    {
+        int [] colPos = new int[ attrs.length ];
+
+        for ( int j = 0; j < attrs.length; j++ )
+        {
+            if ( ( colPos[ j ] = col ( attrs[ j ] ) ) < 0 )
+            {
+                out.println ( "cols: cannot find the attribute " + attrs[ j ] );
+                return null;
+            }
+        }
+        return colPos;
+    } // cols
+
+    /************************************************************************************
+     * Iterate over the tuples of this table grouped by their values in the given
+     * columns, in ascending order of those values.  When the columns are the primary
+     * key (in key order) and the index is ordered and holds every tuple, the index is
+     * scanned directly.  Otherwise a table over the memory budget is sorted externally
+     * (see sortedRuns), and a smaller one (or one whose runs cannot be written) by
+     * loading its tuples into an in-heap BpTreeMap.
+     *
+     * @param colPos  the column positions to group and sort on
+     * @return  an iterator over (key, tuples with that key) in key order
+     */
+    private Iterator <Map.Entry <KeyType, List <Comparable []>>> sortedGroups ( int [] colPos )
+    {
+        if ( indexed () && ( index instanceof SortedMap || index instanceof PrimitiveKeyMap )
+                        && Arrays.equals ( colPos, match ( key ) ) )
+        {
+            Iterator <Map.Entry <KeyType, Comparable []>> it = index.entrySet ().iterator ();
+
+            return new Iterator <Map.Entry <KeyType, List <Comparable []>>> ()
+            {
+                public boolean hasNext () { return it.hasNext (); }
+
+                public Map.Entry <KeyType, List <Comparable []>> next ()
+                {
+                    Map.Entry <KeyType, Comparable []> e = it.next ();
+                    return new AbstractMap.SimpleEntry <> ( e.getKey (), Collections.singletonList ( e.getValue () ) );
+                }
+            };
+        }
+
+        if ( tuples.size () > memoryBudget )
+        {
+            Iterator <Map.Entry <KeyType, List <Comparable []>>> runs = sortedRuns ( colPos );
+
+            if ( runs != null )
+            {
+                return runs;
+            }
+        }
+
+        @SuppressWarnings ( "unchecked" )
+        Class <List <Comparable []>> classV = ( Class <List <Comparable []>> ) ( Class <?> ) List.class;
+
+        BpTreeMap <KeyType, List <Comparable []>> sorted = new BpTreeMap <> ( KeyType.class, classV );
+
+        for ( Comparable [] t : tuples )
+        {
+            KeyType k = keyOf ( t, colPos );
+
+            if ( k != null )
+            {
+                List <Comparable []> group = sorted.get ( k );
+
+                if ( group == null )
+                {
+                    sorted.put ( k, group = new ArrayList <> ( 1 ) );
+                }
+                group.add ( t );
+            }
+        }
+        return sorted.entrySet ().iterator ();
+    } // sortedGroups
+
+    /************************************************************************************
+     * Iterate over the tuples of this table grouped by their values in the given
+     * columns using an external merge sort: runs of at most memoryBudget tuples are
+     * sorted on those columns and written to temporary FileLists, which are merged as
+     * the groups are read, so only the head tuple of each run and the current group are
+     * held in memory.  Tuples with a null in those columns are left out (they never
+     * join).  The run files are deleted once the last group has been read.
+     *
+     * @param colPos  the column positions to group and sort on
+     * @return  an iterator over (key, tuples with that key) in key order, or null if
+     *          the runs could not be written
+     */
+    private Iterator <Map.Entry <KeyType, List <Comparable []>>> sortedRuns ( int [] colPos )
+    {
+        Comparator <Comparable []> byCols = ( a, b ) -> keyOf ( a, colPos ).compareTo ( keyOf ( b, colPos ) );
+
+        List <FileList>      runs = new ArrayList <> ();
+        List <Comparable []> run  = new ArrayList <> ();
+        boolean              ok   = true;
+
+        for ( int i = 0; ok && i <= tuples.size (); i++ )
+        {
+            if ( i < tuples.size () && keyOf ( tuples.get ( i ), colPos ) != null )
+            {
+                run.add ( tuples.get ( i ) );
+            }
+
+            if ( run.size () == memoryBudget || ( i == tuples.size () && ! run.isEmpty () ) )
+            {
+                run.sort ( byCols );
+
+                FileList file = FileList.temp ( this );
+
+                ok = file != null;
+
+                if ( ok )
+                {
+                    runs.add ( file );
+                }
+
+                for ( int j = 0; ok && j < run.size (); j++ )
+                {
+                    ok = file.add ( run.get ( j ) );
+                }
+                run.clear ();
+            }
+        }
+
+        if ( ! ok )
+        {
+            for ( FileList file : runs )
+            {
+                file.delete ();
+            }
+            return null;
+        }
+
+        Comparable [][] head = new Comparable[ runs.size () ][];
+        int         []  pos  = new int[ runs.size () ];
+
+        PriorityQueue <Integer> heap = new PriorityQueue <> ( Math.max ( 1, runs.size () ),
+                                           ( a, b ) -> byCols.compare ( head[ a ], head[ b ] ) );
+
+        for ( int r = 0; r < runs.size (); r++ )
+        {
+            head[ r ] = runs.get ( r ).get ( pos[ r ]++ );
+            heap.add ( r );
+        }
+
+        return new Iterator <Map.Entry <KeyType, List <Comparable []>>> ()
+        {
+            public boolean hasNext () { return ! heap.isEmpty (); }
+
+            public Map.Entry <KeyType, List <Comparable []>> next ()
+            {
+                if ( heap.isEmpty () )
+                {
+                    throw new NoSuchElementException ();
+                }
+
+                KeyType              k     = keyOf ( head[ heap.peek () ], colPos );
+                List <Comparable []> group = new ArrayList <> ( 1 );
+
+                while ( ! heap.isEmpty () && keyOf ( head[ heap.peek () ], colPos ).compareTo ( k ) == 0 )
+                {
+                    int r = heap.poll ();
+
+                    group.add ( head[ r ] );
+
+                    if ( pos[ r ] < runs.get ( r ).size () )
+                    {
+                        head[ r ] = runs.get ( r ).get ( pos[ r ]++ );
+                        heap.add ( r );
+                    }
+                }
+
+                if ( heap.isEmpty () )
+                {
+                    for ( FileList file : runs )
+                    {
+                        file.delete ();
+                    }
+                }
+                return new AbstractMap.SimpleEntry <> ( k, group );
+            }
+        };
+    } // sortedRuns
+
+    /************************************************************************************
+     * Determine whether the given attributes are exactly this table's primary key (in
+     * any order) and, if so, rearrange the paired columns of the other table into key
+     * order so they can be used to probe this table's index.
+     *
+     * @param attrs    the attributes of this table being compared
+     * @param colPos2  the column positions in the other table paired with attrs
+     * @return  colPos2 in the order of this table's key, or null if attrs is not the key
+     */
+    private int [] keyOrder ( String [] attrs, int [] colPos2 )
+    {
+        if ( attrs.length != key.length )
+        {
+            return null;
+        }
+
+        int [] ordered = new int[ key.length ];
+
+        for ( int j = 0; j < key.length; j++ )
+        {
+            int pos = Arrays.asList ( attrs ).indexOf ( key[ j ] );
+
+            if ( pos < 0 )
+            {
+                return null;
+            }
+            ordered[ j ] = colPos2[ pos ];
+        }
+        return ordered;
+    } // keyOrder
+
+    /************************************************************************************
+     * Determine whether the primary index holds every tuple, so it may be probed in
+     * place of a scan.  Tables built by operators from a list of tuples (e.g., the
+     * results of select and join) leave their index empty.
+     *
+     * @return  whether the index covers all the tuples
+     */
+    private boolean indexed ()
+    {
+        return index.size () == tuples.size ();
+    } // indexed
+
+    /************************************************************************************
+     * Have the projection views over this table's tuples copy what they show, as the
+     * tuples or the index are about to change.
+     */
+    private void detachViews ()
+    {
+        if ( views != null )
+        {
+            for ( WeakReference <ProjectedList> v : views )
+            {
+                ProjectedList view = v.get ();
+
+                if ( view != null )
+                {
+                    view.detach ();
+                }
+            }
+            views = null;
+        }
+    } // detachViews
+
+    /************************************************************************************
+     * Form the (possibly composite) key made up of the values in the given columns of
+     * tuple t.  Null values never join, so null is returned if any of them is null.
+     *
+     * @param t       the tuple to take the key values from
+     * @param colPos  the column positions making up the key
+     * @return  the key for tuple t or null if it contains a null value
+     */
+    static KeyType keyOf ( Comparable [] t, int [] colPos )
+    {
+        Comparable [] keyVal = new Comparable[ colPos.length ];
+
+        for ( int j = 0; j < colPos.length; j++ )
+        {
+            if ( ( keyVal[ j ] = t[ colPos[ j ] ] ) == null )
+            {
+                return null;
+            }
+        }
+        return new KeyType ( keyVal );
+    } // keyOf
+
+    /************************************************************************************
+     * Load the tuples into a hash table that groups them by their key on the given
+     * columns (the build phase of a hash join).
+     *
+     * @param rows    the tuples to load
+     * @param colPos  the column positions of the join attributes
+     * @return  a hash table mapping each join key to the tuples having it
+     */
+    private static Map <KeyType, List <Comparable []>> build ( List <Comparable []> rows, int [] colPos )
+    {
+        Map <KeyType, List <Comparable []>> hTable = new HashMap <> ( 2 * rows.size () + 1 );
+
+        for ( Comparable [] t : rows )
+        {
+            KeyType k = keyOf ( t, colPos );
+
+            if ( k != null )
+            {
+                hTable.computeIfAbsent ( k, x -> new ArrayList <> ( 1 ) ).add ( t );
+            }
+        }
+        return hTable;
+    } // build
+
+    /************************************************************************************
+     * Hash join the tuples of the left and right tables on lCols = rCols.  When even the
+     * smaller of the two exceeds the memory budget, a Grace hash join is used instead.
+     *
+     * @param left   the lhs table
+     * @param lCols  the join columns in the lhs tuples
+     * @param right  the rhs table
+     * @param rCols  the join columns in the rhs tuples
+     * @param rKeep  the columns of the rhs tuples to keep in the result
+     * @return  the list of joined tuples
+     */
+    private static List <Comparable []> hashJoin ( Table left,  int [] lCols,
+                                                   Table right, int [] rCols, int [] rKeep )
+    {
+        if ( Math.min ( left.tuples.size (), right.tuples.size () ) > memoryBudget )
+        {
+            List <Comparable []> rows = graceHashJoin ( left, lCols, right, rCols, rKeep );
+
+            if ( rows != null )
+            {
+                return rows;
+            }
+            out.println ( "hashJoin: unable to spill partitions, joining in memory" );
+        }
+        return hashJoin ( left.tuples, lCols, right.tuples, rCols, rKeep );
+    } // hashJoin
+
+    /************************************************************************************
+     * Join the left and right tables using the Grace hash join algorithm.  Both inputs
+     * are hash partitioned on their join columns into temporary FileLists, with enough
+     * partitions for each build side to fit in the memory budget, and then each pair
+     * of partitions is hash joined in turn.  The temporary files are removed after.
+     *
+     * @param left   the lhs table
+     * @param lCols  the join columns in the lhs tuples
+     * @param right  the rhs table
+     * @param rCols  the join columns in the rhs tuples
+     * @param rKeep  the columns of the rhs tuples to keep in the result
+     * @return  the list of joined tuples, or null if the partitions could not be spilled
+     */
+    private static List <Comparable []> graceHashJoin ( Table left,  int [] lCols,
+                                                        Table right, int [] rCols, int [] rKeep )
+    {
+        int nParts = Math.min ( left.tuples.size (), right.tuples.size () ) / memoryBudget + 1;
+
+        FileList [] lParts = left.spill  ( lCols, nParts );
+        FileList [] rParts = right.spill ( rCols, nParts );
+
+        List <Comparable []> rows = null;
+
+        if ( lParts != null && rParts != null )
+        {
+            rows = new ArrayList <> ();
+
+            for ( int p = 0; p < nParts; p++ )
+            {
+                rows.addAll ( hashJoin ( lParts[ p ], lCols, rParts[ p ], rCols, rKeep ) );
+            }
+        }
+
+        for ( FileList [] parts : Arrays.asList ( lParts, rParts ) )
+        {
+            for ( int p = 0; parts != null && p < nParts; p++ )
+            {
+                parts[ p ].delete ();
+            }
+        }
+        return rows;
+    } // graceHashJoin
+
+    /************************************************************************************
+     * Hash partition the tuples of this table on the given columns into temporary
+     * FileLists.  Tuples with a null join value are dropped since they cannot match.
+     *
+     * @param colPos  the join columns to partition on
+     * @param nParts  the number of partitions
+     * @return  the partitions, or null if they could not be written
+     */
+    private FileList [] spill ( int [] colPos, int nParts )
+    {
+        FileList [] parts = new FileList[ nParts ];
+
+        for ( int p = 0; p < nParts; p++ )
+        {
+            if ( ( parts[ p ] = FileList.temp ( this ) ) == null )
+            {
+                for ( int q = 0; q < p; q++ )
+                {
+                    parts[ q ].delete ();
+                }
+                return null;
+            }
+        }
+
+        for ( Comparable [] t : tuples )
+        {
+            KeyType k = keyOf ( t, colPos );
+
+            if ( k != null && ! parts[ Math.floorMod ( k.hashCode (), nParts ) ].add ( t ) )
+            {
+                for ( FileList part : parts )
+                {
+                    part.delete ();
+                }
+                return null;
+            }
+        }
+        return parts;
+    } // spill
+
+    /************************************************************************************
+     * Hash join the left and right tuples on lCols = rCols.  Each result tuple is a left
+     * tuple followed by the rKeep columns of its matching right tuple.  Large inputs are
+     * radix partitioned on their key hashes and the partitions are joined in parallel;
+     * small ones are joined directly.
+     *
+     * @param left   the lhs tuples
+     * @param lCols  the join columns in the lhs tuples
+     * @param right  the rhs tuples
+     * @param rCols  the join columns in the rhs tuples
+     * @param rKeep  the columns of the rhs tuples to keep in the result
+     * @return  the list of joined tuples
+     */
+    private static List <Comparable []> hashJoin ( List <Comparable []> left,  int [] lCols,
+                                                   List <Comparable []> right, int [] rCols, int [] rKeep )
+    {
+        if ( parallelism > 1 && left.size () + right.size () >= PARALLEL_THRESHOLD )
+        {
+            return parallelHashJoin ( left, lCols, right, rCols, rKeep );
+        }
+        return localHashJoin ( left, lCols, right, rCols, rKeep );
+    } // hashJoin
+
+    /************************************************************************************
+     * Radix partition both inputs on the top bits of their (mixed) key hashes, so that
+     * matching tuples land in the same partition, then build and probe each partition
+     * pair as a separate task on the common ForkJoinPool.  Each task produces its own
+     * result list, so the results are gathered by concatenation without any locking.
+     *
+     * @param left   the lhs tuples
+     * @param lCols  the join columns in the lhs tuples
+     * @param right  the rhs tuples
+     * @param rCols  the join columns in the rhs tuples
+     * @param rKeep  the columns of the rhs tuples to keep in the result
+     * @return  the list of joined tuples
+     */
+    private static List <Comparable []> parallelHashJoin ( List <Comparable []> left,  int [] lCols,
+                                                           List <Comparable []> right, int [] rCols, int [] rKeep )
+    {
+        int bits   = 32 - Integer.numberOfLeadingZeros ( parallelism - 1 );
+        int nParts = 1 << bits;
+
+        List <Comparable []> [][] lParts = partition ( left,  lCols, bits );
+        List <Comparable []> [][] rParts = partition ( right, rCols, bits );
+
+        List <ForkJoinTask <List <Comparable []>>> tasks = new ArrayList <> ( nParts );
+
+        for ( int p = 0; p < nParts; p++ )
+        {
+            List <Comparable []> lp = gather ( lParts, p );
+            List <Comparable []> rp = gather ( rParts, p );
+
+            tasks.add ( ForkJoinTask.adapt ( () -> localHashJoin ( lp, lCols, rp, rCols, rKeep ) ).fork () );
+        }
+
+        List <Comparable []> rows = new ArrayList <> ();
+
+        for ( ForkJoinTask <List <Comparable []>> task : tasks )
+        {
+            rows.addAll ( task.join () );
+        }
+        return rows;
+    } // parallelHashJoin
+
+    /************************************************************************************
+     * Split the tuples into 2^bits partitions on the top bits of their mixed key hashes.
+     * The input is cut into chunks that are partitioned in parallel, each chunk into
+     * its own set of partition lists (so no list is shared between threads).  Tuples
+     * with a null join value are dropped since they cannot match.
+     *
+     * @param rows    the tuples to partition
+     * @param colPos  the join columns in the tuples
+     * @param bits    the number of hash bits to partition on
+     * @return  the partition lists indexed by [chunk][partition]
+     */
+    @SuppressWarnings ( "unchecked" )
+    private static List <Comparable []> [][] partition ( List <Comparable []> rows, int [] colPos, int bits )
+    {
+        int nParts = 1 << bits;
+        int chunk  = ( rows.size () + nParts - 1 ) / nParts;
+
+        List <Comparable []> [][] parts = new List[ nParts ][];
+
+        List <ForkJoinTask <?>> tasks = new ArrayList <> ( nParts );
+
+        for ( int c = 0; c < nParts; c++ )
+        {
+            int c0 = c;
+
+            tasks.add ( ForkJoinTask.adapt ( () ->
+            {
+                List <Comparable []> [] local = new List[ nParts ];
+
+                for ( int p = 0; p < nParts; p++ )
+                {
+                    local[ p ] = new ArrayList <> ();
+                }
+
+                int hi = Math.min ( rows.size (), ( c0 + 1 ) * chunk );
+
+                for ( int i = c0 * chunk; i < hi; i++ )
+                {
+                    Comparable [] t = rows.get ( i );
+                    KeyType       k = keyOf ( t, colPos );
+
+                    if ( k != null )
+                    {
+                        local[ ( k.hashCode () * 0x9E3779B9 ) >>> ( 32 - bits ) ].add ( t );
+                    }
+                }
+                parts[ c0 ] = local;
+            } ).fork () );
+        }
+
+        for ( ForkJoinTask <?> task : tasks )
+        {
+            task.join ();
+        }
+        return parts;
+    } // partition
+
+    /************************************************************************************
+     * Gather partition p from all of the chunks into a single list.
+     *
+     * @param parts  the partition lists indexed by [chunk][partition]
+     * @param p      the partition to gather
+     * @return  the tuples in partition p
+     */
+    private static List <Comparable []> gather ( List <Comparable []> [][] parts, int p )
+    {
+        int n = 0;
+
+        for ( List <Comparable []> [] chunk : parts )
+        {
+            n += chunk[ p ].size ();
+        }
+
+        List <Comparable []> rows = new ArrayList <> ( n );
+
+        for ( List <Comparable []> [] chunk : parts )
+        {
+            rows.addAll ( chunk[ p ] );
+        }
+        return rows;
+    } // gather
+
+    /************************************************************************************
+     * Hash join the left and right tuples on lCols = rCols in the current thread.  The
+     * hash table is built on the smaller input and the larger one probes it.
+     *
+     * @param left   the lhs tuples
+     * @param lCols  the join columns in the lhs tuples
+     * @param right  the rhs tuples
+     * @param rCols  the join columns in the rhs tuples
+     * @param rKeep  the columns of the rhs tuples to keep in the result
+     * @return  the list of joined tuples
+     */
+    private static List <Comparable []> localHashJoin ( List <Comparable []> left,  int [] lCols,
+                                                        List <Comparable []> right, int [] rCols, int [] rKeep )
+    {
+        List <Comparable []> rows = new ArrayList <> ();
+
+        if ( left.size () <= right.size () )
+        {
+            Map <KeyType, List <Comparable []>> hTable = build ( left, lCols );
+
+            for ( Comparable [] u : right )
+            {
+                KeyType k = keyOf ( u, rCols );
+                List <Comparable []> matches = ( k == null ) ? null : hTable.get ( k );
+
+                if ( matches != null )
+                {
+                    Comparable [] uKeep = extract ( u, rKeep );
+
+                    for ( Comparable [] t : matches )
+                    {
+                        rows.add ( ArrayUtil.concat ( t, uKeep ) );
+                    }
+                }
+            }
+        }
+        else
+        {
+            Map <KeyType, List <Comparable []>> hTable = build ( right, rCols );
+
+            for ( Comparable [] t : left )
+            {
+                KeyType k = keyOf ( t, lCols );
+                List <Comparable []> matches = ( k == null ) ? null : hTable.get ( k );
+
+                if ( matches != null )
+                {
+                    for ( Comparable [] u : matches )
+                    {
+                        rows.add ( ArrayUtil.concat ( t, extract ( u, rKeep ) ) );
+                    }
+                }
+            }
+        }
+        return rows;
+    } // localHashJoin
+
+    /************************************************************************************
+     * Extract the values in the given column positions from tuple t (or from any array
+     * laid out like a tuple, such as the attribute names).
+     *
+     * @param t       the tuple to extract from
+     * @param colPos  the column positions to extract
+     * @return  a smaller tuple extracted from tuple t
+     */
+    private static <T> T [] extract ( T [] t, int [] colPos )
+    {
+        T [] tup = Arrays.copyOf ( t, colPos.length );
+
+        for ( int j = 0; j < colPos.length; j++ )
+        {
+            tup[ j ] = t[ colPos[ j ] ];
+        }
+        return tup;
+    } // extract
+
+    /************************************************************************************
+     * Make an empty map of the given kind keyed by KeyType.
+     *
+     * @param type    the kind of map
+     * @param classV  the class of the values
+     * @return  the new map
+     */
+    static <V> Map <KeyType, V> makeMap ( MapType type, Class <V> classV )
+    {
+        switch ( type )
+        {
+            case DISK_BPTREE_MAP:
+            case INT_BPTREE_MAP:
+            case DISK_LINHASH_MAP:
+                throw new IllegalArgumentException ( "makeMap: a " + type + " belongs to a table (see newIndex)" );
+            case HASH_MAP:    return new HashMap <> ();
+            case BPTREE_MAP:  return new BpTreeMap <> ( KeyType.class, classV );
+            case LINHASH_MAP: return new LinHashMap <> ( KeyType.class, classV );
+            default:          return new TreeMap <> ();
+        }
+    } // makeMap
+
+    /************************************************************************************
+     * Make an empty primary index of the given kind for this table and record the kind
+     * actually built in indexType.  A disk-based index keeps its pages in the file
+     * DIR/tableName.idx (DIR/tableName.lhx plus the directory file DIR/tableName.lhx.dir
+     * for a hash index), emptied if it exists, and stores the tuples there as packed
+     * records; DIR is created if need be, and if the file still cannot be opened, the
+     * index is kept in memory instead (see inMemory).  An INT_BPTREE_MAP index is a
+     * B+Tree on primitive keys when the key is a single Integer or Long attribute, and
+     * a BpTreeMap otherwise.
+     *
+     * @param type  the kind of map
+     * @return  the new index
+     */
+    private Map <KeyType, Comparable []> newIndex ( MapType type )
+    {
+        indexType = type;
+
+        if ( type != MapType.DISK_BPTREE_MAP && type != MapType.INT_BPTREE_MAP && type != MapType.DISK_LINHASH_MAP )
+        {
+            return makeMap ( type, Comparable [].class );
+        }
+
+        int   [] cols    = match ( key );
+        Class [] domains = new Class[ cols.length ];
+
+        for ( int j = 0; j < cols.length; j++ )
+        {
+            domains[ j ] = domain[ cols[ j ] ];
+        }
+
+        if ( type == MapType.INT_BPTREE_MAP )
+        {
+            if ( domains.length == 1 && PrimitiveKeyMap.supports ( domains[ 0 ] ) )
+            {
+                return PrimitiveKeyMap.of ( domains[ 0 ] );
+            }
+            out.println ( "newIndex: " + type + " needs a single Integer or Long key; using " + MapType.BPTREE_MAP );
+            return newIndex ( MapType.BPTREE_MAP );
+        }
+
+        String path = DIR + name + ( ( type == MapType.DISK_LINHASH_MAP ) ? HASH_EXT : IDX_EXT );
+
+        new File ( DIR ).mkdirs ();
+        try
+        {
+            Map <KeyType, Comparable []> map = ( type == MapType.DISK_LINHASH_MAP )
+                ? new DiskLinHashMap <> ( new File ( path ), Codec.keyType ( domains ), Codec.tuple ( this ) )
+                : new DiskBpTreeMap <>  ( new File ( path ), Codec.keyType ( domains ), Codec.tuple ( this ) );
+            map.clear ();
+            return map;
+        }
+        catch ( UncheckedIOException ex )
+        {
+            out.println ( "newIndex: cannot open " + path + "; using " + inMemory ( type ) );
+            return newIndex ( inMemory ( type ) );
+        }
+    } // newIndex
+
+    /************************************************************************************
+     * Return the in-memory counterpart of a disk-based kind of map (the kind itself for
+     * the others).  Tables built by operators use it, so intermediate results do not
+     * each create (and leave open) an index file.
+     *
+     * @param type  the kind of map
+     * @return  the kind of map to use for an intermediate table
+     */
+    private static MapType inMemory ( MapType type )
+    {
+        if ( type == MapType.DISK_BPTREE_MAP )  return MapType.BPTREE_MAP;
+        if ( type == MapType.DISK_LINHASH_MAP ) return MapType.LINHASH_MAP;
+        return type;
+    } // inMemory
+
+    /************************************************************************************
+     * Return the number of bytes used for a value of the given domain in a packed tuple.
+     *
+     * @param d  the domain (data type)
+     * @return  the number of bytes for its values
+     */
+    private static int valueSize ( Class d )
+    {
+        if ( d == Long.class || d == Double.class )                          return 8;
+        if ( d == Integer.class || d == Float.class )                        return 4;
+        if ( d == Short.class || d == Character.class )                      return 2;
+        if ( d == Byte.class )                                               return 1;
+        return 2 + STRING_SIZE;
+    } // valueSize
+
     /************************************************************************************
      * Extract the corresponding domains.
      *
@@ -101,6 +101,26 @@ class TestDB
         Table t_select2 = movie.select ( t -> ( Integer ) t [ movie.col ( "year" ) ]  < 1980 );
         t_select2.print();
 
+        out.println();
+        Table t_rselect = movie.select ( "year", null, 1980 );
+        t_rselect.print();
+
+        out.println();
+        Table t_select3 = movie.select ( Expression.and ( Expression.eq ( Expression.col ( "studioName" ), Expression.lit ( "Fox" ) ),
+                                                          Expression.lt ( Expression.col ( "year" ), Expression.lit ( 1980 ) ) ) );
+        t_select3.print();
+
+        out.println();
+        Table t_select4 = movie.select ( Expression.and ( Expression.eq ( Expression.col ( "title" ), Expression.lit ( "Rocky" ) ),
+                                                          Expression.eq ( Expression.lit ( 1985 ), Expression.col ( "year" ) ) ) );
+        t_select4.print();
+
+        out.println();
+        Table t_select5 = movie.select ( t -> true )
+                               .select ( Expression.and ( Expression.eq ( Expression.col ( "title" ), Expression.lit ( "Rocky" ) ),
+                                                          Expression.eq ( Expression.col ( "year" ), Expression.lit ( 1985 ) ) ) );
+        t_select5.print();
+
         // --------------------------------------------------------
         // :: TEST 4 -> SELECT: INDEXED
         // --------------------------------------------------------
@@ -109,6 +129,11 @@ class TestDB
         Table t_iselect = movieStar.select ( new KeyType ( "Harrison_Ford" ) );
         t_iselect.print();
 
+        out.println();
+        movie.createIndex ( "movieByStudio", "studioName", Table.MapType.LINHASH_MAP );
+        Table t_iselect2 = movie.select ( "movieByStudio", new KeyType ( "Universal" ) );
+        t_iselect2.print();
+
         // --------------------------------------------------------
         // :: TEST 5 -> UNION
         // --------------------------------------------------------
@@ -126,16 +151,92 @@ class TestDB
         // --------------------------------------------------------
         // :: TEST 7 -> EQUI-JOIN
         // --------------------------------------------------------
+        out.println();
+        Comparable [] studio0 = { "Fox",         "Los_Angeles", 7777 };
+        Comparable [] studio1 = { "Universal",   "Universal_City", 8888 };
+        Comparable [] studio2 = { "Warner Bros", "Burbank",     9999 };
+
+        studio.insert ( studio0 );
+        studio.insert ( studio1 );
+        studio.insert ( studio2 );
+
+        Table t_join = movie.join ( "studioName", "name", studio );
+        t_join.print();
+
+        Table t_join3 = movie.join ( "studioName", "name", studio.select ( t -> true ) );
+        t_join3.print();
+
+        Table t_join2 = movie.join ( "studioName year", "studioName year", cinema );
+        t_join2.print();
+
+        Table t_mjoin = movie.mergeJoin ( "studioName year", "studioName year", cinema );
+        t_mjoin.print();
+
         // --------------------------------------------------------
         // :: TEST 8 -> NATURAL JOIN
         // --------------------------------------------------------
+        out.println();
+        Table t_njoin = movie.join ( cinema );
+        t_njoin.print();
+
+        out.println();
+        Table t_njoin2 = movie.join ( studio.project ( "name presNo" ).join ( "name", "studioName", cinema ) );
+        t_njoin2.print();
+
+        out.println();
+        Table t_njoin3 = cinema.join ( movie.project ( "title year" ) );
+        t_njoin3.print();
+
 
         // --------------------------------------------------------
-        // :: TEST X ->
+        // :: TEST 9 -> PIPELINED SELECT -> PROJECT -> JOIN
         // --------------------------------------------------------
+        out.println();
+        Table t_pipe = movie.scan ()
+                            .select ( t -> ( Integer ) t [ movie.col ( "year" ) ] < 1985 )
+                            .project ( "title year studioName" )
+                            .join ( "studioName", "name", studio.scan () )
+                            .toTable ( "t_pipe" );
+        t_pipe.print();
+
         // --------------------------------------------------------
-        // :: TEST Y ->
+        // :: TEST 10 -> DELETE
         // --------------------------------------------------------
+        out.println();
+        movie.delete ( Expression.lt ( Expression.col ( "year" ), Expression.lit ( 1980 ) ) );
+        movie.print();
+        movie.select ( "movieByStudio", new KeyType ( "Universal" ) ).print();
+
+        // --------------------------------------------------------
+        // :: TEST X -> DISK B+TREE INDEX
+        // --------------------------------------------------------
+        out.println();
+        Table diskMovie = new Table ( "diskMovie", "title year length genre studioName producerNo",
+                                      "String Integer Integer String String Integer", "title year",
+                                      Table.MapType.DISK_BPTREE_MAP );
+        diskMovie.insert ( film0 );
+        diskMovie.insert ( film1 );
+        diskMovie.insert ( film2 );
+        diskMovie.insert ( film3 );
+        diskMovie.insert ( film4 );
+        diskMovie.print();
+        diskMovie.select ( new KeyType ( "Rocky", 1985 ) ).print();
+        diskMovie.delete ( Expression.eq ( Expression.col ( "studioName" ), Expression.lit ( "Fox" ) ) );
+        diskMovie.print();
+
+        // --------------------------------------------------------
+        // :: TEST Y -> DISK LINEAR HASH INDEX
+        // --------------------------------------------------------
+        out.println();
+        Table diskStudio = new Table ( "diskStudio", "name address presNo", "String String Integer", "name",
+                                       Table.MapType.DISK_LINHASH_MAP );
+        diskStudio.insert ( studio0 );
+        diskStudio.insert ( studio1 );
+        diskStudio.insert ( studio2 );
+        diskStudio.print();
+        diskStudio.select ( new KeyType ( "Universal" ) ).print();
+        movie.join ( "studioName", "name", diskStudio ).print();
+
         // --------------------------------------------------------
         // ::
         // --------------------------------------------------------